@@ -0,0 +1,65 @@
+package com.github.wvengen.maven.proguard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the {@code -injars}/{@code -libraryjars} arguments with their filter strings like {@code execute()} does, and
+ * reads the files back out of them like the build cache does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArgumentAssemblyBenchmark {
+
+    @Param({"100", "1000"})
+    public int libraries;
+
+    List<String> paths;
+    List<String> filterList = Arrays.asList("!META-INF/MANIFEST.MF", "!META-INF/maven/**", "!**.txt");
+    List<String> args;
+
+    @Setup
+    public void setup() {
+        paths = new ArrayList<>(libraries);
+        for (int i = 0; i < libraries; i++) {
+            paths.add("/home/user/.m2/repository/org/group" + i + "/artifact-" + i + "/1.0/artifact-" + i + "-1.0.jar");
+        }
+        args = assemble();
+    }
+
+    @Benchmark
+    public List<String> assemble() {
+        List<String> result = new ArrayList<>(libraries * 2 + 2);
+        result.add("-injars");
+        result.add(ProGuardMojo.fileNameToString("/project/target/app.jar") + ProGuardMojo.createFilterString(filterList));
+        for (String path : paths) {
+            result.add("-libraryjars");
+            result.add(ProGuardMojo.fileNameToString(path) + ProGuardMojo.createFilterString(filterList));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<File> parse() {
+        return ProGuardArgs.files(args, null, ProGuardArgs.INJARS, ProGuardArgs.LIBRARYJARS);
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches every artifact of a synthetic dependency set against a list of exclusions, like
+ * {@code ProGuardMojo.isExclusion} does for every compile dependency: one filter at a time, and through an
+ * {@link ArtifactFilterIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactFilterBenchmark {
+
+    @Param({"1000", "10000"})
+    public int artifacts;
+
+    @Param({"10", "50"})
+    public int filters;
+
+    List<Artifact> artifactList;
+    List<Exclusion> exclusions;
+    ArtifactFilterIndex<Exclusion> index;
+
+    @Setup
+    public void setup() {
+        artifactList = new ArrayList<>(artifacts);
+        for (int i = 0; i < artifacts; i++) {
+            artifactList.add(new DefaultArtifact("org.group" + (i % 50) + ".sub", "artifact-" + i,
+                    VersionRange.createFromVersion("1.0"), "compile", "jar", null, new DefaultArtifactHandler()));
+        }
+        exclusions = new ArrayList<>(filters);
+        for (int i = 0; i < filters; i++) {
+            Exclusion exclusion = new Exclusion();
+            switch (i % 3) {
+                case 0:
+                    // plain coordinates
+                    exclusion.groupId = "org.group" + i + ".sub";
+                    exclusion.artifactId = "artifact-" + i;
+                    break;
+                case 1:
+                    // prefix wildcard
+                    exclusion.groupId = "org.group" + i + ".*";
+                    exclusion.artifactId = "*";
+                    break;
+                default:
+                    // wildcard in the middle
+                    exclusion.groupId = "*";
+                    exclusion.artifactId = "artifact-*" + i;
+                    break;
+            }
+            exclusions.add(exclusion);
+        }
+        index = new ArtifactFilterIndex<>(exclusions);
+    }
+
+    @Benchmark
+    public int matchEach() {
+        int excluded = 0;
+        for (Artifact artifact : artifactList) {
+            for (Exclusion exclusion : exclusions) {
+                if (exclusion.match(artifact)) {
+                    excluded++;
+                    break;
+                }
+            }
+        }
+        return excluded;
+    }
+
+    @Benchmark
+    public int matchIndex() {
+        int excluded = 0;
+        for (Artifact artifact : artifactList) {
+            if (index.matchesAny(artifact)) {
+                excluded++;
+            }
+        }
+        return excluded;
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.archiver.AbstractArchiver;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.UnArchiver;
+import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.components.io.resources.PlexusIoResourceCollection;
+import org.codehaus.plexus.components.io.resources.PlexusIoZipFileResourceCollection;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Merges the ProGuard result with the library jars of an {@code assembly}, like {@code execute()} does with the
+ * {@link JarArchiver} and with the {@link ZipMerger} of {@code assemblyMerge=stream}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssemblyMergeBenchmark {
+
+    @Param({"10", "50"})
+    public int libraries;
+
+    File dir;
+    File result;
+    List<File> libraryJars;
+    File merged;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = BenchmarkFiles.tempDir("assembly");
+        result = BenchmarkFiles.syntheticJar(dir, "result.jar", 500, 4096);
+        libraryJars = new ArrayList<>(libraries);
+        for (int i = 0; i < libraries; i++) {
+            libraryJars.add(BenchmarkFiles.syntheticJar(dir, "lib" + i + ".jar", 200, 4096));
+        }
+        merged = new File(dir, "merged.jar");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public File jarArchiver() throws Exception {
+        merged.delete();
+        JarArchiver archiver = newJarArchiver();
+        archiver.setDestFile(merged);
+        archiver.addArchivedFileSet(result);
+        for (File library : libraryJars) {
+            archiver.addArchivedFileSet(library);
+        }
+        archiver.createArchive();
+        return merged;
+    }
+
+    @Benchmark
+    public File zipMerger() throws Exception {
+        try (ZipMerger merger = new ZipMerger(merged, Deflater.DEFAULT_COMPRESSION)) {
+            merger.addZip(result, name -> true);
+            for (File library : libraryJars) {
+                merger.addZip(library, name -> true);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns a {@link JarArchiver} that works without a Plexus container. Maven injects the archiver manager the
+     * archiver uses to read archived file sets; here it is set by hand.
+     */
+    static JarArchiver newJarArchiver() throws Exception {
+        JarArchiver archiver = new JarArchiver();
+        archiver.enableLogging(new ConsoleLogger(Logger.LEVEL_ERROR, "benchmark"));
+        Field manager = AbstractArchiver.class.getDeclaredField("archiverManager");
+        manager.setAccessible(true);
+        manager.set(archiver, new ZipArchiverManager());
+        return archiver;
+    }
+
+    private static final class ZipArchiverManager implements ArchiverManager {
+
+        @Override
+        public PlexusIoResourceCollection getResourceCollection(File file) {
+            PlexusIoZipFileResourceCollection collection = new PlexusIoZipFileResourceCollection();
+            collection.setFile(file);
+            return collection;
+        }
+
+        @Override
+        public PlexusIoResourceCollection getResourceCollection(String format) throws NoSuchArchiverException {
+            throw new NoSuchArchiverException(format);
+        }
+
+        @Override
+        public Archiver getArchiver(String format) throws NoSuchArchiverException {
+            throw new NoSuchArchiverException(format);
+        }
+
+        @Override
+        public Archiver getArchiver(File file) throws NoSuchArchiverException {
+            throw new NoSuchArchiverException(file.getName());
+        }
+
+        @Override
+        public UnArchiver getUnArchiver(String format) throws NoSuchArchiverException {
+            throw new NoSuchArchiverException(format);
+        }
+
+        @Override
+        public UnArchiver getUnArchiver(File file) throws NoSuchArchiverException {
+            throw new NoSuchArchiverException(file.getName());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the jars the benchmarks work on.
+ */
+final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    static File tempDir(String prefix) throws IOException {
+        return Files.createTempDirectory("proguard-bench-" + prefix).toFile();
+    }
+
+    /**
+     * Writes a jar of {@code entries} resources of {@code entrySize} bytes each, half random and half repetitive so
+     * they compress like real class files do.
+     */
+    static File syntheticJar(File dir, String name, int entries, int entrySize) throws IOException {
+        File jar = new File(dir, name);
+        Random random = new Random(name.hashCode());
+        byte[] content = new byte[entrySize];
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < entries; i++) {
+                random.nextBytes(content);
+                for (int j = entrySize / 2; j < entrySize; j++) {
+                    content[j] = (byte) (j % 7);
+                }
+                out.putNextEntry(new ZipEntry("com/example/" + name.replace('.', '_') + "/Entry" + i + ".class"));
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Writes a jar with the first {@code classes} real class files of proguard-core.
+     */
+    static File classJar(File dir, int classes) throws IOException {
+        File jar = new File(dir, "classes-" + classes + ".jar");
+        byte[] buffer = new byte[65536];
+        try (ZipFile source = new ZipFile(proguardCoreJar());
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            Enumeration<? extends ZipEntry> entries = source.entries();
+            int count = 0;
+            while (entries.hasMoreElements() && count < classes) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/")) {
+                    continue;
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                try (InputStream in = source.getInputStream(entry)) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                }
+                out.closeEntry();
+                count++;
+            }
+        }
+        return jar;
+    }
+
+    static File proguardCoreJar() throws IOException {
+        try {
+            return new File(Class.forName("proguard.classfile.ClassPool").getProtectionDomain().getCodeSource()
+                    .getLocation().toURI());
+        } catch (ClassNotFoundException | URISyntaxException e) {
+            throw new IOException("proguard-core is not on the class path", e);
+        }
+    }
+
+    /**
+     * Returns the ProGuard {@code -libraryjars} argument for the Java runtime classes.
+     */
+    static String runtimeLibrary() {
+        File javaHome = new File(System.getProperty("java.home"));
+        File jmod = new File(javaHome, "jmods/java.base.jmod");
+        if (jmod.isFile()) {
+            return "'" + jmod + "'(!**.jar;!module-info.class)";
+        }
+        return "'" + new File(javaHome, "lib/rt.jar") + "'";
+    }
+}
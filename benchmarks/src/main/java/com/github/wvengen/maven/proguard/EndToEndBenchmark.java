@@ -0,0 +1,62 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs ProGuard in process on generated jars of real class files, the way {@code executionMode=inProcess} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"100", "1000"})
+    public int classes;
+
+    File dir;
+    String[] args;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = BenchmarkFiles.tempDir("e2e");
+        File injar = BenchmarkFiles.classJar(dir, classes);
+        args = new String[]{
+                "-injars", "'" + injar + "'",
+                "-outjars", "'" + new File(dir, "out.jar") + "'",
+                "-libraryjars", BenchmarkFiles.runtimeLibrary(),
+                "-printmapping", "'" + new File(dir, "proguard_map.txt") + "'",
+                "-dontwarn",
+                "-ignorewarnings",
+                "-keep public class * { public protected *; }",
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public File proguard() throws Exception {
+        ProGuardRunner.execute(getClass().getClassLoader(), args, dir);
+        return dir;
+    }
+}
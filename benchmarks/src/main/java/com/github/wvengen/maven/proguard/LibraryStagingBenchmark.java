@@ -0,0 +1,65 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stages library jars for {@code putLibraryJarsInTempDir} with each strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibraryStagingBenchmark {
+
+    @Param({"50", "400"})
+    public int libraries;
+
+    @Param({"copy", "hardlink", "symlink"})
+    public String strategy;
+
+    File dir;
+    List<File> libraryJars;
+    LibraryStager stager;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchmarkFiles.tempDir("staging");
+        File libs = new File(dir, "libs");
+        libs.mkdirs();
+        libraryJars = new ArrayList<>(libraries);
+        for (int i = 0; i < libraries; i++) {
+            libraryJars.add(BenchmarkFiles.syntheticJar(libs, "lib" + i + ".jar", 20, 4096));
+        }
+        stager = new LibraryStager(new File(dir, "staged"), LibraryStager.Strategy.parse(strategy), 0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public LibraryStager.Result stage() throws IOException {
+        return stager.stage(libraryJars, false);
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.wvengen.maven.proguard;
+
+import com.github.wvengen.maven.proguard.retrace.MappingIndex;
+import com.github.wvengen.maven.proguard.retrace.Retracer;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a batch of obfuscated stack traces with the {@link Retracer} of the {@code retrace} goal and with ProGuard's
+ * own ReTrace, which parses the whole mapping for every batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetraceBenchmark {
+
+    private static final int METHODS_PER_CLASS = 20;
+    private static final int TRACES = 2000;
+    private static final int FRAMES_PER_TRACE = 25;
+
+    /** The stack trace expression of ProGuard's ReTrace. */
+    private static final String REGULAR_EXPRESSION =
+            "(?:.*?\\bat\\s+%c\\.%m\\s*\\(%s(?::%l)?\\)\\s*(?:~\\[.*\\])?)|(?:(?:.*?[:\"]\\s+)?%c(?::.*)?)";
+
+    @Param({"2000", "20000"})
+    public int classes;
+
+    File dir;
+    File mappingFile;
+    File indexFile;
+    String trace;
+    MappingIndex index;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = BenchmarkFiles.tempDir("retrace");
+        mappingFile = new File(dir, "proguard_map.txt");
+        indexFile = new File(dir, "proguard_map.retrace");
+        Files.write(mappingFile.toPath(), mapping().getBytes(StandardCharsets.UTF_8));
+        MappingIndex.parse(mappingFile).write(indexFile);
+        index = MappingIndex.read(indexFile);
+        trace = trace();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public int parseMapping() throws IOException {
+        return MappingIndex.parse(mappingFile).classCount();
+    }
+
+    @Benchmark
+    public int readIndex() throws IOException {
+        return MappingIndex.read(indexFile).classCount();
+    }
+
+    @Benchmark
+    public int retracer() throws IOException {
+        return retrace(MappingIndex.read(indexFile), 1);
+    }
+
+    @Benchmark
+    public int retracerIndexed() throws IOException {
+        return retrace(index, 1);
+    }
+
+    @Benchmark
+    public int retracerParallel() throws IOException {
+        return retrace(index, 4);
+    }
+
+    @Benchmark
+    public int reTrace() throws Exception {
+        StringWriter out = new StringWriter(trace.length() * 2);
+        Object reTrace = newReTrace(mappingFile);
+        Method retrace = reTrace.getClass().getMethod("retrace", LineNumberReader.class, PrintWriter.class);
+        try (PrintWriter writer = new PrintWriter(out)) {
+            retrace.invoke(reTrace, new LineNumberReader(new StringReader(trace)), writer);
+        }
+        return out.getBuffer().length();
+    }
+
+    private int retrace(MappingIndex index, int threads) throws IOException {
+        StringWriter out = new StringWriter(trace.length() * 2);
+        new Retracer(index).retrace(new BufferedReader(new StringReader(trace)), out, threads);
+        return out.getBuffer().length();
+    }
+
+    /**
+     * Creates a {@code proguard.retrace.ReTrace}, whose constructor differs between ProGuard versions: it takes the
+     * regular expression and possibly a second one for class names, some flags and the mapping file.
+     */
+    private static Object newReTrace(File mappingFile) throws Exception {
+        Class<?> reTraceClass = Class.forName("proguard.retrace.ReTrace");
+        for (Constructor<?> constructor : reTraceClass.getConstructors()) {
+            Class<?>[] types = constructor.getParameterTypes();
+            if (types.length == 0 || types[types.length - 1] != File.class) {
+                continue;
+            }
+            Object[] args = new Object[types.length];
+            for (int i = 0; i < types.length - 1; i++) {
+                args[i] = types[i] == String.class ? REGULAR_EXPRESSION : Boolean.FALSE;
+            }
+            args[types.length - 1] = mappingFile;
+            return constructor.newInstance(args);
+        }
+        throw new IllegalStateException("No ReTrace constructor taking a mapping file");
+    }
+
+    private String mapping() {
+        StringBuilder mapping = new StringBuilder(classes * METHODS_PER_CLASS * 60);
+        for (int c = 0; c < classes; c++) {
+            mapping.append("com.example.module").append(c % 50).append(".Component").append(c)
+                    .append(" -> ").append(obfuscatedClass(c)).append(":\n");
+            mapping.append("    java.lang.String name -> a\n");
+            int line = 1;
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                int length = 5 + m % 7;
+                mapping.append("    ").append(line).append(':').append(line + length - 1).append(":void method")
+                        .append(m).append("(int,java.lang.String):").append(100 + m * 20).append(':')
+                        .append(100 + m * 20 + length - 1).append(" -> ").append(obfuscatedMethod(m)).append('\n');
+                if (m % 4 == 0) {
+                    // a call inlined at the last line of the method
+                    int last = line + length - 1;
+                    mapping.append("    ").append(last).append(':').append(last)
+                            .append(":void com.example.Util.check(int):").append(40 + m).append(':').append(40 + m)
+                            .append(" -> ").append(obfuscatedMethod(m)).append('\n');
+                }
+                line += length;
+            }
+        }
+        return mapping.toString();
+    }
+
+    private String trace() {
+        Random random = new Random(42);
+        StringBuilder trace = new StringBuilder(TRACES * FRAMES_PER_TRACE * 40);
+        for (int t = 0; t < TRACES; t++) {
+            trace.append(obfuscatedClass(random.nextInt(classes))).append(": request failed\n");
+            for (int f = 0; f < FRAMES_PER_TRACE; f++) {
+                int m = random.nextInt(METHODS_PER_CLASS);
+                trace.append("\tat ").append(obfuscatedClass(random.nextInt(classes))).append('.')
+                        .append(obfuscatedMethod(m)).append("(SourceFile:").append(firstLine(m) + 2).append(")\n");
+            }
+            trace.append("\tat java.lang.Thread.run(Thread.java:833)\n");
+        }
+        return trace.toString();
+    }
+
+    private static int firstLine(int method) {
+        int line = 1;
+        for (int m = 0; m < method; m++) {
+            line += 5 + m % 7;
+        }
+        return line;
+    }
+
+    private static String obfuscatedClass(int c) {
+        return "a." + Integer.toString(c, 36);
+    }
+
+    private static String obfuscatedMethod(int m) {
+        return String.valueOf((char) ('a' + m));
+    }
+}
@@ -22,55 +22,59 @@ package com.github.wvengen.maven.proguard;
 
 import org.apache.maven.artifact.Artifact;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
-
 public class ArtifactFilter {
 
-    private static final String WILDCARD = "*";
-
     protected String groupId;
 
     protected String artifactId;
 
     protected String classifier;
 
+    private transient NameMatcher groupIdMatcher;
+
+    private transient NameMatcher artifactIdMatcher;
+
     public boolean match(Artifact artifact) {
-        boolean artifactMatch = WILDCARD.equals(this.artifactId) || artifact.getArtifactId().equals(this.artifactId) ||
-                (artifactId != null && getArtifactIdMatcher(artifact).matches());
-        boolean groupMatch = artifact.getGroupId().equals(this.groupId) ||
-                (groupId != null && getGroupIdMatcher(artifact).matches());
+        boolean artifactMatch = getArtifactIdMatcher().matches(artifact.getArtifactId());
+        boolean groupMatch = getGroupIdMatcher().matches(artifact.getGroupId());
         boolean classifierMatch = ((this.classifier == null) && (artifact.getClassifier() == null)) || ((this.classifier != null) && this.classifier.equals(artifact.getClassifier()));
         return artifactMatch && groupMatch && classifierMatch;
     }
 
-    private Matcher getArtifactIdMatcher(Artifact artifact) {
-        try {
-            Pattern compile = Pattern.compile(escapeRegex(this.artifactId));
-            return compile.matcher(artifact.getArtifactId());
-        } catch (PatternSyntaxException e) {
-            throw new IllegalArgumentException("Invalid regex artifactId filter: " + this, e);
+    /**
+     * Returns the compiled artifactId filter, compiling it again if the filter changed.
+     */
+    NameMatcher getArtifactIdMatcher() {
+        NameMatcher matcher = artifactIdMatcher;
+        if (matcher == null || !equals(matcher.source, artifactId)) {
+            try {
+                matcher = NameMatcher.compile(artifactId);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid regex artifactId filter: " + this, e.getCause());
+            }
+            artifactIdMatcher = matcher;
         }
+        return matcher;
     }
 
-    private Matcher getGroupIdMatcher(Artifact artifact) {
-        try {
-            Pattern compile = Pattern.compile(escapeRegex(this.groupId));
-            return compile.matcher(artifact.getGroupId());
-        } catch (PatternSyntaxException e) {
-            throw new IllegalArgumentException("Invalid regex groupId filter: " + this, e);
-        }
-    }
-    
     /**
-     * Escape regex and keep wildcard.<br>
-     * {@link Pattern#quote(String)} method wrap string between '\Q' for starting ignoring and '\E' for ending ignoring,<br>
-     * so we don't want to escape wildcard.<br>
-     * 'myregexpart1*myregexpart2' becomes '\Qmyregexpart1\E.*\Qmyregexpart2\E'.
+     * Returns the compiled groupId filter, compiling it again if the filter changed.
      */
-    private String escapeRegex(String str) {
-    	return Pattern.quote(str).replace(WILDCARD, "\\E.*\\Q");
+    NameMatcher getGroupIdMatcher() {
+        NameMatcher matcher = groupIdMatcher;
+        if (matcher == null || !equals(matcher.source, groupId)) {
+            try {
+                matcher = NameMatcher.compile(groupId);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid regex groupId filter: " + this, e.getCause());
+            }
+            groupIdMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
     }
 
     @Override
@@ -0,0 +1,149 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.artifact.Artifact;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches artifacts against many {@link ArtifactFilter}s at once, with the same result as calling
+ * {@link ArtifactFilter#match} on each of them.
+ *
+ * <p>Filters are indexed by their groupId: plain groupIds in a hash map, groupIds ending in {@code *} in a prefix trie
+ * and only the remaining ones, {@code *} and other wildcard positions, are tried one by one. An artifact is then only
+ * checked against the artifactId and classifier of the filters its groupId selects.
+ */
+final class ArtifactFilterIndex<F extends ArtifactFilter> {
+
+    private static final class Candidate {
+        final int index;
+        final NameMatcher artifactId;
+        final String classifier;
+
+        Candidate(int index, NameMatcher artifactId, String classifier) {
+            this.index = index;
+            this.artifactId = artifactId;
+            this.classifier = classifier;
+        }
+
+        boolean matches(Artifact artifact) {
+            String artifactClassifier = artifact.getClassifier();
+            boolean classifierMatch = classifier == null ? artifactClassifier == null : classifier.equals(artifactClassifier);
+            String name = artifact.getArtifactId();
+            return classifierMatch && (artifactId.kind() == NameMatcher.Kind.ANY || name != null && artifactId.matches(name));
+        }
+    }
+
+    private static final class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>();
+        final List<Candidate> candidates = new ArrayList<>();
+    }
+
+    private final List<F> filters;
+    private final Map<String, List<Candidate>> exactGroups = new HashMap<>();
+    private final TrieNode prefixGroups = new TrieNode();
+    private final List<NameMatcher> otherGroupMatchers = new ArrayList<>();
+    private final List<Candidate> otherGroups = new ArrayList<>();
+
+    ArtifactFilterIndex(List<F> filters) {
+        this.filters = filters == null ? Collections.<F>emptyList() : new ArrayList<>(filters);
+        for (int i = 0; i < this.filters.size(); i++) {
+            F filter = this.filters.get(i);
+            NameMatcher group = filter.getGroupIdMatcher();
+            NameMatcher artifactId = filter.getArtifactIdMatcher();
+            if (group.kind() == NameMatcher.Kind.NONE || artifactId.kind() == NameMatcher.Kind.NONE) {
+                continue;
+            }
+            Candidate candidate = new Candidate(i, artifactId, filter.classifier);
+            switch (group.kind()) {
+                case EXACT:
+                    List<Candidate> candidates = exactGroups.get(group.literal());
+                    if (candidates == null) {
+                        candidates = new ArrayList<>();
+                        exactGroups.put(group.literal(), candidates);
+                    }
+                    candidates.add(candidate);
+                    break;
+                case PREFIX:
+                    TrieNode node = prefixGroups;
+                    for (char c : group.literal().toCharArray()) {
+                        TrieNode child = node.children.get(c);
+                        if (child == null) {
+                            child = new TrieNode();
+                            node.children.put(c, child);
+                        }
+                        node = child;
+                    }
+                    node.candidates.add(candidate);
+                    break;
+                default:
+                    otherGroupMatchers.add(group);
+                    otherGroups.add(candidate);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns the filters matching {@code artifact}, in the order they were given.
+     */
+    List<F> match(Artifact artifact) {
+        BitSet matches = matchIndexes(artifact);
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<F> result = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(filters.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indexes of the filters matching {@code artifact}.
+     */
+    BitSet matchIndexes(Artifact artifact) {
+        BitSet matches = new BitSet(filters.size());
+        String groupId = artifact.getGroupId();
+        if (groupId != null) {
+            List<Candidate> candidates = exactGroups.get(groupId);
+            if (candidates != null) {
+                collect(candidates, artifact, matches);
+            }
+            TrieNode node = prefixGroups;
+            for (int i = 0; node != null; i++) {
+                collect(node.candidates, artifact, matches);
+                node = i < groupId.length() ? node.children.get(groupId.charAt(i)) : null;
+            }
+        }
+        for (int i = 0; i < otherGroups.size(); i++) {
+            NameMatcher group = otherGroupMatchers.get(i);
+            if (group.kind() == NameMatcher.Kind.ANY || groupId != null && group.matches(groupId)) {
+                Candidate candidate = otherGroups.get(i);
+                if (candidate.matches(artifact)) {
+                    matches.set(candidate.index);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns whether any filter matches {@code artifact}.
+     */
+    boolean matchesAny(Artifact artifact) {
+        return !match(artifact).isEmpty();
+    }
+
+    private static void collect(List<Candidate> candidates, Artifact artifact, BitSet matches) {
+        for (Candidate candidate : candidates) {
+            if (candidate.matches(artifact)) {
+                matches.set(candidate.index);
+            }
+        }
+    }
+}
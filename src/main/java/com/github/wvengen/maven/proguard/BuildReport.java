@@ -0,0 +1,120 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Durations of the phases of one ProGuard execution plus statistics of the ProGuard run, written as JSON and CSV.
+ */
+final class BuildReport {
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private final long start = System.nanoTime();
+    private String currentPhase;
+    private long currentStart;
+
+    /**
+     * Ends the current phase, if any, and starts {@code phase}.
+     */
+    void begin(String phase) {
+        end();
+        currentPhase = phase;
+        currentStart = System.nanoTime();
+    }
+
+    void end() {
+        if (currentPhase != null) {
+            add(currentPhase, (System.nanoTime() - currentStart) / 1000000);
+            currentPhase = null;
+        }
+    }
+
+    /**
+     * Adds {@code millis} to the duration of {@code phase}.
+     */
+    void add(String phase, long millis) {
+        Long previous = phases.get(phase);
+        phases.put(phase, previous == null ? millis : previous + millis);
+    }
+
+    void set(String name, Object value) {
+        values.put(name, value);
+    }
+
+    void write(File json, File csv) throws IOException {
+        end();
+        long total = (System.nanoTime() - start) / 1000000;
+
+        StringBuilder out = new StringBuilder("{\n");
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            out.append("  ").append(quote(value.getKey())).append(": ");
+            if (value.getValue() instanceof Number || value.getValue() instanceof Boolean) {
+                out.append(value.getValue());
+            } else {
+                out.append(quote(String.valueOf(value.getValue())));
+            }
+            out.append(",\n");
+        }
+        out.append("  \"totalMillis\": ").append(total).append(",\n");
+        out.append("  \"phases\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            out.append(separator).append("    ").append(quote(phase.getKey())).append(": ").append(phase.getValue());
+            separator = ",\n";
+        }
+        out.append("\n  }\n}\n");
+        write(json, out);
+
+        out = new StringBuilder("name,value\n");
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            out.append("phase.").append(phase.getKey()).append(',').append(phase.getValue()).append('\n');
+        }
+        out.append("totalMillis,").append(total).append('\n');
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            out.append(value.getKey()).append(',').append(value.getValue()).append('\n');
+        }
+        write(csv, out);
+    }
+
+    private static void write(File file, CharSequence content) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.append(content);
+        }
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Application class data sharing archives of the forked ProGuard JVM.
+ *
+ * <p>The first fork with a given class path dumps the classes it loaded into a dynamic archive at exit
+ * ({@code -XX:ArchiveClassesAtExit}, JDK 13 and later); later forks map that archive ({@code -XX:SharedArchiveFile})
+ * instead of loading and verifying the classes again. An archive only fits the JVM that created it and a class path
+ * starting with the same jars, so archives are named after a digest of the JVM and of the class path, including the
+ * size and modification time of every entry.
+ */
+final class ClassDataSharing {
+
+    private final File directory;
+
+    ClassDataSharing(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns whether the forked JVM, which is the one running Maven, supports dynamic archives.
+     */
+    static boolean isSupported() {
+        String version = System.getProperty("java.specification.version", "");
+        try {
+            return !version.startsWith("1.") && Integer.parseInt(version) >= 13;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the archive for {@code classpath}, which need not exist yet.
+     */
+    File archive(List<File> classpath) {
+        StringBuilder key = new StringBuilder();
+        key.append(System.getProperty("java.home")).append('\n');
+        key.append(System.getProperty("java.vm.version")).append('\n');
+        for (File file : classpath) {
+            key.append(file.getAbsolutePath()).append(' ').append(file.length()).append(' ')
+                    .append(file.lastModified()).append('\n');
+        }
+        return new File(directory, "proguard-" + Digests.sha256(key.toString()).substring(0, 16) + ".jsa");
+    }
+
+    /**
+     * Returns a fresh file for a fork to dump {@code archive} to.
+     */
+    File dumpFile(File archive) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File dump = File.createTempFile(archive.getName(), ".tmp", directory);
+        // the JVM refuses to dump over an existing file
+        Files.delete(dump.toPath());
+        return dump;
+    }
+
+    /**
+     * Makes the archive dumped to {@code dump} available as {@code archive}. Returns {@code false} if the fork did not
+     * dump anything.
+     */
+    boolean publish(File dump, File archive) throws IOException {
+        if (!dump.isFile()) {
+            return false;
+        }
+        Files.move(dump.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes the method bodies from class files, leaving only what ProGuard reads from a library class: the class, its
+ * fields and methods with their signatures and attributes. Also lists the classes a class file refers to.
+ *
+ * <p>The constant pool is copied unchanged, including the entries only the removed {@code Code} attributes used.
+ */
+final class ClassFileStripper {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /** A class in a descriptor or signature. */
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;<>\\[\\s():]+)[;<]");
+
+    private ClassFileStripper() {
+    }
+
+    /**
+     * Returns {@code classFile} without the {@code Code} attributes of its methods.
+     *
+     * @throws IOException if {@code classFile} is not a valid class file
+     */
+    static byte[] strip(byte[] classFile) throws IOException {
+        try {
+            return new Pass(classFile).strip();
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid class file: " + e, e);
+        }
+    }
+
+    /**
+     * Returns the internal names of the classes {@code classFile} refers to in its constant pool, by class entries or
+     * in descriptors and signatures, including its own name.
+     *
+     * @throws IOException if {@code classFile} is not a valid class file
+     */
+    static Set<String> referencedClasses(byte[] classFile) throws IOException {
+        try {
+            return new Pass(classFile).referencedClasses();
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid class file: " + e, e);
+        }
+    }
+
+    private static final class Pass {
+
+        private final ByteBuffer in;
+        private final ByteArrayOutputStream out;
+        private int copiedUpTo;
+        private int[] utf8Offsets;
+        private final List<Integer> classNameIndexes = new ArrayList<>();
+
+        Pass(byte[] classFile) {
+            this.in = ByteBuffer.wrap(classFile);
+            this.out = new ByteArrayOutputStream(classFile.length / 2);
+        }
+
+        byte[] strip() throws IOException {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a class file");
+            }
+            in.getShort(); // minor version
+            in.getShort(); // major version
+            readConstantPool();
+            in.getShort(); // access flags
+            in.getShort(); // this class
+            in.getShort(); // super class
+            skip(2 * u2()); // interfaces
+            int fields = u2();
+            for (int i = 0; i < fields; i++) {
+                skip(6);
+                skipAttributes();
+            }
+            int methods = u2();
+            for (int i = 0; i < methods; i++) {
+                skip(6);
+                stripCodeAttributes();
+            }
+            skipAttributes();
+            copyUpTo(in.position());
+            return out.toByteArray();
+        }
+
+        Set<String> referencedClasses() throws IOException {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a class file");
+            }
+            in.getShort(); // minor version
+            in.getShort(); // major version
+            readConstantPool();
+            Set<String> names = new HashSet<>();
+            for (int i = 1; i < utf8Offsets.length; i++) {
+                if (utf8Offsets[i] != 0) {
+                    Matcher matcher = DESCRIPTOR_CLASS.matcher(utf8(i));
+                    while (matcher.find()) {
+                        names.add(matcher.group(1));
+                    }
+                }
+            }
+            for (int index : classNameIndexes) {
+                String name = utf8(index);
+                // array classes are in descriptor form, and already found above
+                if (!name.startsWith("[")) {
+                    names.add(name);
+                }
+            }
+            return names;
+        }
+
+        private String utf8(int index) {
+            int offset = utf8Offsets[index];
+            int length = ((in.array()[offset] & 0xff) << 8) | (in.array()[offset + 1] & 0xff);
+            return new String(in.array(), offset + 2, length, StandardCharsets.UTF_8);
+        }
+
+        private void readConstantPool() throws IOException {
+            int count = u2();
+            utf8Offsets = new int[count];
+            for (int i = 1; i < count; i++) {
+                int tag = in.get();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8Offsets[i] = in.position();
+                        skip(u2());
+                        break;
+                    case 7: // Class
+                        classNameIndexes.add(u2());
+                        break;
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        skip(2);
+                        break;
+                    case 15: // MethodHandle
+                        skip(3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        skip(4);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        skip(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+
+        private void stripCodeAttributes() {
+            copyUpTo(in.position());
+            int count = u2();
+            ByteArrayOutputStream kept = new ByteArrayOutputStream();
+            int keptCount = 0;
+            for (int i = 0; i < count; i++) {
+                int start = in.position();
+                int name = u2();
+                skip(in.getInt());
+                if (!isCode(name)) {
+                    kept.write(in.array(), start, in.position() - start);
+                    keptCount++;
+                }
+            }
+            out.write(keptCount >> 8);
+            out.write(keptCount);
+            out.write(kept.toByteArray(), 0, kept.size());
+            copiedUpTo = in.position();
+        }
+
+        private boolean isCode(int name) {
+            int offset = name < utf8Offsets.length ? utf8Offsets[name] : 0;
+            if (offset == 0) {
+                return false;
+            }
+            int length = ((in.array()[offset] & 0xff) << 8) | (in.array()[offset + 1] & 0xff);
+            return length == 4 && "Code".equals(new String(in.array(), offset + 2, 4, StandardCharsets.UTF_8));
+        }
+
+        private void skipAttributes() {
+            int count = u2();
+            for (int i = 0; i < count; i++) {
+                skip(2);
+                skip(in.getInt());
+            }
+        }
+
+        private void copyUpTo(int position) {
+            if (position > copiedUpTo) {
+                out.write(in.array(), copiedUpTo, position - copiedUpTo);
+                copiedUpTo = position;
+            }
+        }
+
+        private int u2() {
+            return in.getShort() & 0xffff;
+        }
+
+        private void skip(int length) {
+            in.position(in.position() + length);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the classes that more than one ProGuard input defines, for {@code classpathDeduplication}.
+ *
+ * <p>ProGuard reads the program inputs before the libraries, and ignores a class it already read. A library whose
+ * classes all come earlier, from a program input without filter or from another library, therefore adds nothing but
+ * parsing time, and can be left out without changing the result. Inputs are listed in parallel.
+ */
+final class ClasspathOverlaps {
+
+    /**
+     * A ProGuard input, in the order ProGuard reads them: program inputs first.
+     */
+    static final class Input {
+        final File file;
+        final boolean library;
+        /** Whether ProGuard reads all classes of the input, i.e. there is no filter that may leave some out. */
+        final boolean complete;
+        Set<String> classes;
+
+        Input(File file, boolean library, boolean complete) {
+            this.file = file;
+            this.library = library;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * What {@link #analyze} found.
+     */
+    static final class Result {
+        /** Libraries whose classes all come from earlier inputs. */
+        final List<File> redundantLibraries = new ArrayList<>();
+        /** Number of shared classes, by the two inputs defining them. */
+        final Map<String, Integer> overlaps = new LinkedHashMap<>();
+        int duplicateClasses;
+        long millis;
+    }
+
+    private final int threads;
+
+    ClasspathOverlaps(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    Result analyze(List<Input> inputs) throws IOException {
+        long start = System.nanoTime();
+        list(inputs);
+
+        Result result = new Result();
+        Map<String, Input> definers = new HashMap<>();
+        for (Input input : inputs) {
+            boolean redundant = input.library && !input.classes.isEmpty();
+            for (String name : input.classes) {
+                Input definer = definers.get(name);
+                if (definer == null) {
+                    definers.put(name, input);
+                    redundant = false;
+                } else {
+                    result.duplicateClasses++;
+                    String key = definer.file.getName() + " and " + input.file.getName();
+                    Integer count = result.overlaps.get(key);
+                    result.overlaps.put(key, count == null ? 1 : count + 1);
+                    redundant &= definer.library || definer.complete;
+                }
+            }
+            if (redundant) {
+                result.redundantLibraries.add(input.file);
+            }
+        }
+        result.millis = (System.nanoTime() - start) / 1000000;
+        return result;
+    }
+
+    /**
+     * Returns the overlaps of {@code result} with the most shared classes first.
+     */
+    static List<Map.Entry<String, Integer>> largestOverlaps(Result result) {
+        List<Map.Entry<String, Integer>> overlaps = new ArrayList<>(result.overlaps.entrySet());
+        Collections.sort(overlaps, (a, b) -> b.getValue().compareTo(a.getValue()));
+        return overlaps;
+    }
+
+    private void list(List<Input> inputs) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, inputs.size())));
+        try {
+            List<Future<Set<String>>> futures = new ArrayList<>(inputs.size());
+            for (final Input input : inputs) {
+                futures.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws IOException {
+                        return classNames(input.file);
+                    }
+                }));
+            }
+            for (int i = 0; i < inputs.size(); i++) {
+                inputs.get(i).classes = futures.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Can't list the classes of the ProGuard inputs", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while listing the classes of the ProGuard inputs", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the class file names in a jar, jmod or directory, or none if it is neither.
+     */
+    static Set<String> classNames(File input) throws IOException {
+        Set<String> names = new HashSet<>();
+        if (input.isDirectory()) {
+            addClassNames(input, "", names);
+        } else if (input.isFile()) {
+            boolean jmod = input.getName().endsWith(".jmod");
+            try (ZipFile zip = new ZipFile(input)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (jmod) {
+                        if (!name.startsWith("classes/")) {
+                            continue;
+                        }
+                        name = name.substring("classes/".length());
+                    }
+                    addClassName(name, names);
+                }
+            } catch (ZipException e) {
+                // not an archive ProGuard reads classes from, so it neither covers nor is covered
+                names.clear();
+            }
+        }
+        return names;
+    }
+
+    private static void addClassNames(File dir, String prefix, Set<String> names) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + dir);
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addClassNames(child, prefix + child.getName() + "/", names);
+            } else {
+                addClassName(prefix + child.getName(), names);
+            }
+        }
+    }
+
+    private static void addClassName(String name, Set<String> names) {
+        // module descriptors and versioned classes are not plain classes of the class pool
+        if (name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/")) {
+            names.add(name);
+        }
+    }
+}
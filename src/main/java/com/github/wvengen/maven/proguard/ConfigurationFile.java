@@ -0,0 +1,107 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The ProGuard configuration file written for {@code generateTemporaryConfigurationFile}, and the hash of the
+ * effective configuration.
+ *
+ * <p>The text is the same for the same arguments wherever the project is checked out: files below the project base
+ * directory are written relative to the directory of the configuration file, which ProGuard resolves them against.
+ * The file is only rewritten if its content changed, so its modification time stays as it is for unchanged
+ * configurations.
+ */
+final class ConfigurationFile {
+
+    /** Options followed by a file argument. */
+    private static final Set<String> FILE_OPTIONS = new HashSet<>(Arrays.asList(ProGuardArgs.INJARS,
+            ProGuardArgs.OUTJARS, ProGuardArgs.LIBRARYJARS, ProGuardArgs.INCLUDE, ProGuardArgs.APPLYMAPPING,
+            "-printmapping", "-printseeds", "-printusage", "-printconfiguration", "-dump", "-obfuscationdictionary",
+            "-classobfuscationdictionary", "-packageobfuscationdictionary"));
+
+    private ConfigurationFile() {
+    }
+
+    /**
+     * Returns the configuration text of {@code args}, for a file in {@code configurationDir}. Relative paths in
+     * {@code args} are relative to {@code baseDir}.
+     */
+    static String text(List<String> args, File configurationDir, File baseDir) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.startsWith("-")) {
+                text.append("\n");
+            } else {
+                text.append(" ");
+            }
+            if (i > 0 && FILE_OPTIONS.contains(args.get(i - 1))) {
+                arg = relativize(arg, configurationDir, baseDir);
+            }
+            text.append(arg);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns {@code value}, a file argument, with a file below {@code baseDir} relative to {@code configurationDir}.
+     */
+    static String relativize(String value, File configurationDir, File baseDir) {
+        String path = ProGuardArgs.path(value);
+        if (path.isEmpty() || path.indexOf('<') >= 0 || path.indexOf(File.pathSeparatorChar) >= 0 || baseDir == null) {
+            // system properties and class paths are left to ProGuard
+            return value;
+        }
+        Path file = ProGuardArgs.resolve(path, baseDir).toPath().toAbsolutePath().normalize();
+        Path base = baseDir.toPath().toAbsolutePath().normalize();
+        if (!file.startsWith(base)) {
+            return value;
+        }
+        String relative = configurationDir.toPath().toAbsolutePath().normalize().relativize(file).toString();
+        String filter = ProGuardArgs.filter(value);
+        return ProGuardMojo.fileNameToString(relative.isEmpty() ? "." : relative)
+                + (filter == null ? "" : "(" + filter + ")");
+    }
+
+    /**
+     * Returns the SHA-256 of the configuration {@code text} and of the {@code includes} it refers to.
+     */
+    static String hash(String text, Collection<File> includes) throws IOException {
+        MessageDigest digest = Digests.sha256();
+        Digests.update(digest, text);
+        for (File include : includes) {
+            Digests.update(digest, include);
+        }
+        return Digests.hex(digest.digest());
+    }
+
+    /**
+     * Writes {@code content} to {@code file} unless it already has that content. Returns whether it was written.
+     */
+    static boolean writeIfChanged(File file, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (file.isFile() && file.length() == bytes.length
+                && Arrays.equals(Files.readAllBytes(file.toPath()), bytes)) {
+            return false;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.write(tmp.toPath(), bytes);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.artifact.Artifact;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the executions of one build found out about their dependencies: which artifact files exist, and which
+ * inclusion and exclusion filters match an artifact.
+ *
+ * <p>The modules of a reactor mostly share their dependencies, so every execution would otherwise check the same
+ * files and evaluate the same filters again. Files are only remembered once they exist, as a module of the reactor
+ * may still have to build them. Filter verdicts are kept per distinct list of filters, as the indexes of the matching
+ * filters, so executions with equal filters in their own configuration objects share them.
+ */
+final class DependencyScanCache {
+
+    /**
+     * The verdicts of one list of filters.
+     */
+    static final class FilterVerdicts {
+        private final ArtifactFilterIndex<ArtifactFilter> index;
+        private final ConcurrentHashMap<String, BitSet> verdicts = new ConcurrentHashMap<>();
+
+        FilterVerdicts(List<? extends ArtifactFilter> filters) {
+            index = new ArtifactFilterIndex<ArtifactFilter>(
+                    filters == null ? null : new ArrayList<ArtifactFilter>(filters));
+        }
+
+        /**
+         * Returns the indexes of the filters matching {@code artifact}, not to be modified.
+         */
+        BitSet match(Artifact artifact) {
+            String key = artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getClassifier();
+            BitSet matches = verdicts.get(key);
+            if (matches == null) {
+                matches = index.matchIndexes(artifact);
+                verdicts.put(key, matches);
+            }
+            return matches;
+        }
+    }
+
+    private static final Object LOCK = new Object();
+    private static WeakReference<Object> currentBuild = new WeakReference<Object>(null);
+    private static DependencyScanCache current;
+
+    private final ConcurrentHashMap<String, Boolean> existingFiles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, FilterVerdicts> filterVerdicts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cache of the build identified by {@code build}, e.g. its list of reactor projects, or a new cache
+     * for {@code null}. Only the latest build is remembered.
+     */
+    static DependencyScanCache forBuild(Object build) {
+        if (build == null) {
+            return new DependencyScanCache();
+        }
+        synchronized (LOCK) {
+            if (currentBuild.get() != build) {
+                current = new DependencyScanCache();
+                currentBuild = new WeakReference<Object>(build);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Returns whether the file of {@code artifact} exists.
+     */
+    boolean exists(Artifact artifact) {
+        File file = artifact.getFile();
+        if (file == null) {
+            return false;
+        }
+        String key = artifact.getId() + '@' + file.getPath();
+        if (existingFiles.containsKey(key)) {
+            return true;
+        }
+        if (!file.exists()) {
+            return false;
+        }
+        existingFiles.put(key, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Returns the verdicts of {@code filters}, shared with earlier executions with the same filters.
+     */
+    FilterVerdicts filterVerdicts(List<? extends ArtifactFilter> filters) {
+        StringBuilder key = new StringBuilder();
+        if (filters != null) {
+            for (ArtifactFilter filter : filters) {
+                key.append(filter.groupId).append(':').append(filter.artifactId).append(':').append(filter.classifier)
+                        .append('\n');
+            }
+        }
+        FilterVerdicts verdicts = filterVerdicts.get(key.toString());
+        if (verdicts == null) {
+            verdicts = new FilterVerdicts(filters);
+            FilterVerdicts previous = filterVerdicts.putIfAbsent(key.toString(), verdicts);
+            if (previous != null) {
+                verdicts = previous;
+            }
+        }
+        return verdicts;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * SHA-256 digests of strings, files and directory trees.
+ */
+final class Digests {
+
+    private Digests() {
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, file);
+        return hex(digest.digest());
+    }
+
+    static String sha256(String value) {
+        return hex(sha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Adds the content of {@code file} to {@code digest}. A directory contributes the relative names and contents of
+     * all files below it, in a stable order. A missing file contributes a marker only.
+     */
+    static void update(MessageDigest digest, File file) throws IOException {
+        if (file.isDirectory()) {
+            updateDirectory(digest, file, "");
+        } else if (file.isFile()) {
+            byte[] buffer = new byte[65536];
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+        } else {
+            update(digest, "<missing>");
+        }
+    }
+
+    private static void updateDirectory(MessageDigest digest, File dir, String prefix) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + dir);
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                updateDirectory(digest, child, name + "/");
+            } else {
+                update(digest, name);
+                update(digest, child);
+            }
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs ProGuard inside the Maven JVM.
+ *
+ * <p>ProGuard is loaded in a class loader of its own, isolated from the plugin class path. The class loaders are kept
+ * for as long as the plugin is loaded, which is the whole Maven session, so every module of a reactor build after the
+ * first one runs ProGuard code that is already loaded and compiled by the JIT.
+ *
+ * <p>ProGuard writes its output to the console. While ProGuard runs, the console streams are replaced by streams that
+ * pass what the threads of a run write to the output of that run, and everything else to the console, so runs of
+ * parallel modules keep their output apart. The console streams are put back when the last of the runs ends.
+ */
+final class InProcessProGuard {
+
+    private static final Map<List<File>, URLClassLoader> CLASS_LOADERS = new ConcurrentHashMap<>();
+
+    /** The run the current thread belongs to; inherited by the threads ProGuard starts. */
+    private static final InheritableThreadLocal<Run> RUNS = new InheritableThreadLocal<>();
+
+    private static DispatchingStream out;
+    private static DispatchingStream err;
+    /** Number of runs using {@link #out} and {@link #err}. */
+    private static int streamUsers;
+
+    private InProcessProGuard() {
+    }
+
+    /**
+     * Returns the cached class loader for the given ProGuard jars, creating it from {@code classpath} on first use.
+     */
+    static ClassLoader getClassLoader(List<File> proguardJars, Collection<File> classpath) throws MojoExecutionException {
+        List<File> key = new ArrayList<>(proguardJars);
+        URLClassLoader loader = CLASS_LOADERS.get(key);
+        if (loader != null) {
+            return loader;
+        }
+        List<URL> urls = new ArrayList<>(classpath.size());
+        try {
+            for (File file : classpath) {
+                urls.add(file.toURI().toURL());
+            }
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Invalid ProGuard class path " + classpath, e);
+        }
+        // the parent is the platform class loader, so nothing from the Maven or plugin class path leaks in
+        URLClassLoader created = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+        URLClassLoader existing = CLASS_LOADERS.putIfAbsent(key, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Parses {@code args} like the ProGuard command line does and runs ProGuard with the resulting configuration,
+     * passing the lines ProGuard writes to the console to {@code output}.
+     */
+    static void run(ClassLoader loader, List<String> args, File baseDir, ProGuardWorkerClient.Output output)
+            throws MojoExecutionException {
+        DispatchingStream[] streams = installDispatchingStreams();
+        Run run = new Run(output);
+        RUNS.set(run);
+        try {
+            ProGuardRunner.execute(loader, args.toArray(new String[0]), baseDir);
+        } catch (InvocationTargetException e) {
+            throw new MojoExecutionException("Obfuscation failed: " + e.getCause(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new MojoExecutionException("ProGuard can't be run in process: " + e, e);
+        } catch (Exception e) {
+            throw new MojoExecutionException("Obfuscation failed: " + e, e);
+        } finally {
+            for (DispatchingStream stream : streams) {
+                stream.endLine(run);
+            }
+            run.finish();
+            RUNS.remove();
+            uninstallDispatchingStreams();
+        }
+    }
+
+    /**
+     * Makes the console streams dispatching streams, unless a run already did, and returns them.
+     */
+    private static synchronized DispatchingStream[] installDispatchingStreams() {
+        if (streamUsers++ == 0) {
+            out = new DispatchingStream(System.out, false);
+            System.setOut(out.printStream);
+            err = new DispatchingStream(System.err, true);
+            System.setErr(err.printStream);
+        }
+        return new DispatchingStream[]{out, err};
+    }
+
+    /**
+     * Puts the console streams back once no run uses the dispatching streams, unless they were replaced since.
+     */
+    private static synchronized void uninstallDispatchingStreams() {
+        if (--streamUsers > 0) {
+            return;
+        }
+        if (System.out == out.printStream) {
+            System.setOut(out.console);
+        }
+        if (System.err == err.printStream) {
+            System.setErr(err.console);
+        }
+        out = null;
+        err = null;
+    }
+
+    /**
+     * The output of one ProGuard run. Threads that outlive the run write to the console again.
+     */
+    private static final class Run {
+
+        private final ProGuardWorkerClient.Output output;
+        private volatile boolean finished;
+
+        Run(ProGuardWorkerClient.Output output) {
+            this.output = output;
+        }
+
+        synchronized void line(String line, boolean err) {
+            // what the output writes to the console itself goes to the console
+            RUNS.remove();
+            try {
+                if (err) {
+                    output.err(line);
+                } else {
+                    output.out(line);
+                }
+            } finally {
+                RUNS.set(this);
+            }
+        }
+
+        void finish() {
+            finished = true;
+        }
+    }
+
+    /**
+     * Passes what the threads of a {@link Run} write to its output, a line at a time, and everything else to the
+     * console.
+     */
+    private static final class DispatchingStream extends OutputStream {
+
+        private final PrintStream console;
+        private final boolean err;
+        private final PrintStream printStream;
+        private final ThreadLocal<ByteArrayOutputStream> lines = new ThreadLocal<ByteArrayOutputStream>() {
+            @Override
+            protected ByteArrayOutputStream initialValue() {
+                return new ByteArrayOutputStream();
+            }
+        };
+
+        DispatchingStream(PrintStream console, boolean err) {
+            this.console = console;
+            this.err = err;
+            this.printStream = new PrintStream(this, true);
+        }
+
+        private static Run currentRun() {
+            Run run = RUNS.get();
+            return run != null && !run.finished ? run : null;
+        }
+
+        @Override
+        public void write(int b) {
+            Run run = currentRun();
+            if (run == null) {
+                console.write(b);
+            } else {
+                write(run, b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            Run run = currentRun();
+            if (run == null) {
+                console.write(b, off, len);
+            } else {
+                for (int i = off; i < off + len; i++) {
+                    write(run, b[i]);
+                }
+            }
+        }
+
+        private void write(Run run, int b) {
+            ByteArrayOutputStream line = lines.get();
+            if (b == '\n') {
+                sendLine(run, line);
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        /**
+         * Passes the partial line the current thread wrote to {@code run}. Print streams flush after every write, so
+         * partial lines are only sent at the end of a run.
+         */
+        void endLine(Run run) {
+            printStream.flush();
+            ByteArrayOutputStream line = lines.get();
+            if (line.size() > 0) {
+                sendLine(run, line);
+            }
+        }
+
+        private void sendLine(Run run, ByteArrayOutputStream line) {
+            String text = new String(line.toByteArray(), Charset.defaultCharset());
+            line.reset();
+            run.line(text, err);
+        }
+
+        @Override
+        public void flush() {
+            console.flush();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Splits the injars of a ProGuard run into shards that ProGuard can process on their own: no class of one shard
+ * refers to a class of another, and no package has classes in more than one shard. What the shards have in common
+ * can only come from the libraries.
+ *
+ * <p>References are read from the constant pools of the class files. References by name only, in strings or in
+ * resources such as service files, don't connect injars. Classes in the same package always end up in the same
+ * shard, so obfuscated class names can't clash when the shards are merged as long as package names are kept.
+ */
+final class InjarShards {
+
+    /** Options whose outputs can't be merged, or that need to see all classes at once. */
+    private static final Set<String> UNSUPPORTED_OPTIONS = new HashSet<>(Arrays.asList(ProGuardArgs.APPLYMAPPING,
+            "-repackageclasses", "-flattenpackagehierarchy", "-printusage", "-printconfiguration", "-dump"));
+
+    private InjarShards() {
+    }
+
+    /**
+     * Returns why the ProGuard run of {@code args} can't be sharded, or {@code null} if it can. The configuration
+     * files {@code args} include are checked as well.
+     */
+    static String unsupportedReason(List<String> args, File baseDir) throws IOException {
+        List<String> options = new ArrayList<>();
+        for (String arg : args) {
+            // an <option> may hold a whole line, like "-repackageclasses ''"
+            options.addAll(ProGuardArgs.words(arg));
+        }
+        Set<File> included = new HashSet<>();
+        List<File> includes = ProGuardArgs.files(args, baseDir, ProGuardArgs.INCLUDE);
+        includes.addAll(ProGuardArgs.files(options, baseDir, ProGuardArgs.INCLUDE));
+        while (!includes.isEmpty()) {
+            File include = includes.remove(0).getAbsoluteFile();
+            if (!included.add(include) || !include.isFile()) {
+                continue;
+            }
+            List<String> words = ProGuardArgs.words(new String(Files.readAllBytes(include.toPath()), StandardCharsets.UTF_8));
+            options.addAll(words);
+            includes.addAll(ProGuardArgs.files(words, include.getParentFile(), ProGuardArgs.INCLUDE));
+        }
+
+        boolean obfuscating = true;
+        boolean keepingPackageNames = false;
+        int outjars = 0;
+        for (int i = 0; i < options.size(); i++) {
+            String option = options.get(i);
+            if (UNSUPPORTED_OPTIONS.contains(option)) {
+                return "the configuration uses " + option;
+            } else if (option.equals(ProGuardArgs.OUTJARS)) {
+                outjars++;
+            } else if (option.equals("-dontobfuscate")) {
+                obfuscating = false;
+            } else if (option.equals("-keeppackagenames")) {
+                String filter = i + 1 < options.size() ? options.get(i + 1) : "-";
+                keepingPackageNames |= filter.startsWith("-") || filter.equals("**");
+            }
+        }
+        if (outjars != 1) {
+            return "the configuration has " + outjars + " outjars";
+        }
+        if (obfuscating && !keepingPackageNames) {
+            return "obfuscated package names of the shards would clash, add -keeppackagenames or -dontobfuscate";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the shards of {@code injars}, as lists of their indexes in ascending order, the shard of the first injar
+     * first.
+     */
+    static List<List<Integer>> shards(List<File> injars) throws IOException {
+        int[] parents = new int[injars.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        Map<String, Integer> definers = new HashMap<>();
+        Map<String, Integer> packages = new HashMap<>();
+        List<Set<String>> references = new ArrayList<>();
+        for (int i = 0; i < injars.size(); i++) {
+            List<String> names = new ArrayList<>();
+            Set<String> referenced = new HashSet<>();
+            readClasses(injars.get(i), names, referenced);
+            for (String name : names) {
+                if (!definers.containsKey(name)) {
+                    definers.put(name, i);
+                }
+                int end = name.lastIndexOf('/');
+                String packageName = end < 0 ? "" : name.substring(0, end);
+                Integer packageInjar = packages.get(packageName);
+                if (packageInjar == null) {
+                    packages.put(packageName, i);
+                } else {
+                    union(parents, packageInjar, i);
+                }
+            }
+            references.add(referenced);
+        }
+        for (int i = 0; i < references.size(); i++) {
+            for (String name : references.get(i)) {
+                Integer definer = definers.get(name);
+                if (definer != null) {
+                    union(parents, definer, i);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            int root = find(parents, i);
+            List<Integer> shard = shards.get(root);
+            if (shard == null) {
+                shard = new ArrayList<>();
+                shards.put(root, shard);
+            }
+            shard.add(i);
+        }
+        return new ArrayList<>(shards.values());
+    }
+
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        // the lower index stays the root, so the shards keep the order of their first injar
+        if (rootA < rootB) {
+            parents[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parents[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Adds the internal names of the classes in a jar or directory to {@code names}, and the classes they refer to to
+     * {@code referenced}. Adds nothing if it is neither.
+     */
+    private static void readClasses(File input, List<String> names, Set<String> referenced) throws IOException {
+        if (input.isDirectory()) {
+            readClasses(input, "", names, referenced);
+        } else if (input.isFile()) {
+            try (ZipFile zip = new ZipFile(input)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (isClassFile(entry.getName())) {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            names.add(className(entry.getName()));
+                            referenced.addAll(ClassFileStripper.referencedClasses(IOUtils.toByteArray(in)));
+                        }
+                    }
+                }
+            } catch (ZipException e) {
+                // not an archive ProGuard reads classes from
+            }
+        }
+    }
+
+    private static void readClasses(File dir, String prefix, List<String> names, Set<String> referenced)
+            throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + dir);
+        }
+        for (File child : children) {
+            String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                readClasses(child, name + "/", names, referenced);
+            } else if (isClassFile(name)) {
+                names.add(className(name));
+                referenced.addAll(ClassFileStripper.referencedClasses(Files.readAllBytes(child.toPath())));
+            }
+        }
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/");
+    }
+
+    private static String className(String fileName) {
+        return fileName.substring(0, fileName.length() - ".class".length());
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * JVM options of a ProGuard process: the garbage collector choice and the automatic max heap size.
+ */
+final class JvmOptions {
+
+    static final String AUTO = "auto";
+
+    private static final long MB = 1024 * 1024;
+
+    /** Heap used by ProGuard whatever its input. */
+    private static final long BASE_HEAP = 128 * MB;
+    private static final long MIN_HEAP = 256 * MB;
+
+    /**
+     * A program class takes a few times its class file size in ProGuard's class pool, plus the processing structures
+     * of the shrinker, optimizer and obfuscator.
+     */
+    private static final int PROGRAM_CLASS_FACTOR = 5;
+
+    /** A library class only keeps its names and signatures. */
+    private static final int LIBRARY_CLASS_FACTOR = 1;
+
+    private JvmOptions() {
+    }
+
+    /**
+     * Returns the JVM arguments selecting {@code gc}: {@code serial}, {@code parallel}, {@code g1}, {@code z} or
+     * {@code shenandoah}. A {@code null} or empty {@code gc} leaves the JVM default.
+     */
+    static List<String> gcArgs(String gc) {
+        if (gc == null || gc.isEmpty()) {
+            return Collections.emptyList();
+        }
+        switch (gc.toLowerCase(Locale.ROOT)) {
+            case "serial":
+                return Collections.singletonList("-XX:+UseSerialGC");
+            case "parallel":
+                return Collections.singletonList("-XX:+UseParallelGC");
+            case "g1":
+                return Collections.singletonList("-XX:+UseG1GC");
+            case "z":
+                return Collections.singletonList("-XX:+UseZGC");
+            case "shenandoah":
+                return Collections.singletonList("-XX:+UseShenandoahGC");
+            default:
+                throw new IllegalArgumentException("Unknown gc " + gc + ", expected serial, parallel, g1, z or shenandoah");
+        }
+    }
+
+    /**
+     * Estimates the max heap ProGuard needs for the {@code -injars} and {@code -libraryjars} in {@code args}, from the
+     * uncompressed size of their class files and the compressed size of everything else, which ProGuard only copies.
+     * The estimate is at least 256 MB and at most three quarters of the physical memory, if known.
+     *
+     * @param powerOfTwo round up to a power of two, so similar inputs get the same value
+     */
+    static String estimateMaxMemory(List<String> args, File baseDir, boolean powerOfTwo) throws IOException {
+        return estimateMaxMemory(args, baseDir, powerOfTwo, physicalMemory());
+    }
+
+    /**
+     * Like {@link #estimateMaxMemory(List, File, boolean)}, for a machine with {@code physical} bytes of memory, or -1
+     * if unknown.
+     */
+    static String estimateMaxMemory(List<String> args, File baseDir, boolean powerOfTwo, long physical)
+            throws IOException {
+        long heap = BASE_HEAP;
+        for (File input : ProGuardArgs.files(args, baseDir, ProGuardArgs.INJARS)) {
+            long[] sizes = sizes(input);
+            heap += PROGRAM_CLASS_FACTOR * sizes[0] + sizes[1];
+        }
+        for (File input : ProGuardArgs.files(args, baseDir, ProGuardArgs.LIBRARYJARS)) {
+            heap += LIBRARY_CLASS_FACTOR * sizes(input)[0];
+        }
+        heap = Math.max(MIN_HEAP, heap);
+        long megabytes = (heap + MB - 1) / MB;
+        if (powerOfTwo) {
+            megabytes = Long.highestOneBit(megabytes - 1) << 1;
+        } else {
+            megabytes = (megabytes + 63) / 64 * 64;
+        }
+        if (physical > 0) {
+            megabytes = Math.min(megabytes, physical / 4 * 3 / MB);
+        }
+        return megabytes + "m";
+    }
+
+    /**
+     * Returns the uncompressed size of the class files and the compressed size of the other files in {@code input}.
+     */
+    private static long[] sizes(File input) throws IOException {
+        long[] sizes = new long[2];
+        if (input.isDirectory()) {
+            addDirectorySizes(input, sizes);
+        } else if (input.isFile()) {
+            try (ZipFile zip = new ZipFile(input)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        sizes[0] += Math.max(0, entry.getSize());
+                    } else {
+                        sizes[1] += Math.max(0, entry.getCompressedSize());
+                    }
+                }
+            } catch (IOException e) {
+                // not a jar, e.g. a jmod
+                sizes[0] += input.length();
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Adds the sizes of the files below {@code dir}. Archives count with their entries, as ProGuard reads them, e.g.
+     * the library jars staged in a directory for {@code putLibraryJarsInTempDir}.
+     */
+    private static void addDirectorySizes(File dir, long[] sizes) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName().toLowerCase(Locale.ROOT);
+            if (child.isDirectory()) {
+                addDirectorySizes(child, sizes);
+            } else if (name.endsWith(".jar") || name.endsWith(".zip") || name.endsWith(".aar")
+                    || name.endsWith(".jmod")) {
+                long[] archiveSizes = sizes(child);
+                sizes[0] += archiveSizes[0];
+                sizes[1] += archiveSizes[1];
+            } else {
+                sizes[name.endsWith(".class") ? 0 : 1] += child.length();
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes of a max heap setting such as {@code 512m} or {@code 2g}, or 0 for {@code null} or a setting
+     * that can't be parsed.
+     */
+    static long parseMemory(String memory) {
+        if (memory == null || memory.isEmpty()) {
+            return 0;
+        }
+        long unit = 1;
+        switch (Character.toLowerCase(memory.charAt(memory.length() - 1))) {
+            case 'k':
+                unit = 1024;
+                break;
+            case 'm':
+                unit = MB;
+                break;
+            case 'g':
+                unit = 1024 * MB;
+                break;
+            case 't':
+                unit = 1024 * 1024 * MB;
+                break;
+            default:
+                break;
+        }
+        String digits = unit == 1 ? memory : memory.substring(0, memory.length() - 1);
+        try {
+            return Long.parseLong(digits) * unit;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the physical memory of this machine, or -1 if the JVM doesn't tell.
+     */
+    static long physicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        try {
+            Object size = Class.forName("com.sun.management.OperatingSystemMXBean")
+                    .getMethod("getTotalPhysicalMemorySize").invoke(os);
+            return ((Number) size).longValue();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return -1;
+        }
+    }
+}
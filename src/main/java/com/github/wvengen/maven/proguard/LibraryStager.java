@@ -0,0 +1,295 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts library jars and directories into one staging directory, for {@code putLibraryJarsInTempDir}.
+ *
+ * <p>Library files all go into the subdirectory {@code 0}; the library directory at (1-based) position {@code i} goes
+ * into subdirectory {@code i}. Files are copied, hard linked or symbolically linked in parallel. Reflinks are made
+ * with one process for all library files and one for every library directory. Links that the file system refuses
+ * fall back to copies.
+ *
+ * <p>A manifest of the staged libraries is written last, so a later run can reuse a complete staging directory that
+ * still matches its inputs instead of staging again.
+ */
+final class LibraryStager {
+
+    enum Strategy {
+        COPY, HARDLINK, SYMLINK, REFLINK;
+
+        static Strategy parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown library staging strategy " + value
+                        + ", expected one of " + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * What {@link #stage} did.
+     */
+    static final class Result {
+        /** Staging directory of each library directory, in library order. */
+        final List<File> directories = new ArrayList<>();
+        /** Directory holding all library files. */
+        File commonDir;
+        final AtomicLong bytesCopied = new AtomicLong();
+        final AtomicLong bytesLinked = new AtomicLong();
+        final AtomicLong fallbacks = new AtomicLong();
+        boolean reused;
+        long millis;
+    }
+
+    private static final String MANIFEST = ".staged";
+
+    private final File stagingDir;
+    private final Strategy strategy;
+    private final int threads;
+
+    LibraryStager(File stagingDir, Strategy strategy, int threads) {
+        this.stagingDir = stagingDir;
+        this.strategy = strategy;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    Result stage(List<File> libraries, boolean reuse) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        result.commonDir = new File(stagingDir, "0");
+
+        // the later of two library files with the same name wins, as it always has
+        Map<String, File> commonFiles = new LinkedHashMap<>();
+        Map<File, File> directories = new LinkedHashMap<>();
+        int directoryIndex = 1;
+        for (File library : libraries) {
+            if (library.isFile()) {
+                commonFiles.put(library.getName(), library);
+            } else {
+                File subDir = new File(stagingDir, String.valueOf(directoryIndex));
+                directories.put(library, subDir);
+                result.directories.add(subDir);
+            }
+            directoryIndex++;
+        }
+
+        String manifest = manifest(libraries);
+        File manifestFile = new File(stagingDir, MANIFEST);
+        if (reuse && manifestFile.isFile()
+                && manifest.equals(new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8))) {
+            result.reused = true;
+            result.millis = (System.nanoTime() - start) / 1000000;
+            return result;
+        }
+
+        if (stagingDir.exists()) {
+            FileUtils.deleteDirectory(stagingDir);
+        }
+        if (!result.commonDir.mkdirs()) {
+            throw new IOException("Can't create temporary libraryJars directory: " + stagingDir.getAbsolutePath());
+        }
+
+        List<Path[]> tasks = new ArrayList<>();
+        if (strategy == Strategy.REFLINK) {
+            reflink(commonFiles.values(), result.commonDir, directories, tasks, result);
+        } else {
+            addFileTasks(commonFiles.values(), result.commonDir, tasks);
+            for (Map.Entry<File, File> entry : directories.entrySet()) {
+                addDirectoryTasks(entry.getKey(), entry.getValue(), tasks);
+            }
+        }
+        run(tasks, result);
+
+        Files.write(manifestFile.toPath(), manifest.getBytes(StandardCharsets.UTF_8));
+        result.millis = (System.nanoTime() - start) / 1000000;
+        return result;
+    }
+
+    private String manifest(List<File> libraries) throws IOException {
+        StringBuilder manifest = new StringBuilder(strategy.name()).append('\n');
+        for (File library : libraries) {
+            manifest.append(library.getAbsolutePath()).append('\n');
+            appendFingerprint(library, manifest);
+        }
+        return manifest.toString();
+    }
+
+    private static void appendFingerprint(File file, StringBuilder manifest) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                throw new IOException("Can't list " + file);
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                manifest.append(' ').append(child.getName()).append('\n');
+                appendFingerprint(child, manifest);
+            }
+        } else {
+            manifest.append(' ').append(file.length()).append(' ').append(file.lastModified()).append('\n');
+        }
+    }
+
+    private static void addFileTasks(Collection<File> files, File targetDir, List<Path[]> tasks) {
+        for (File file : files) {
+            tasks.add(new Path[]{file.toPath(), new File(targetDir, file.getName()).toPath()});
+        }
+    }
+
+    private static void addDirectoryTasks(File source, File target, List<Path[]> tasks) throws IOException {
+        if (!target.isDirectory() && !target.mkdirs()) {
+            throw new IOException("Can't create " + target);
+        }
+        File[] children = source.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + source);
+        }
+        for (File child : children) {
+            File childTarget = new File(target, child.getName());
+            if (child.isDirectory()) {
+                addDirectoryTasks(child, childTarget, tasks);
+            } else {
+                tasks.add(new Path[]{child.toPath(), childTarget.toPath()});
+            }
+        }
+    }
+
+    private void run(List<Path[]> tasks, final Result result) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(tasks.size());
+            for (final Path[] task : tasks) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        stageFile(task[0], task[1], result);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Can't copy to temporary libraryJars directory", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while staging library jars", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void stageFile(Path source, Path target, Result result) throws IOException {
+        long size = Files.size(source);
+        try {
+            switch (strategy) {
+                case HARDLINK:
+                    Files.createLink(target, source);
+                    result.bytesLinked.addAndGet(size);
+                    return;
+                case SYMLINK:
+                    Files.createSymbolicLink(target, source.toAbsolutePath());
+                    result.bytesLinked.addAndGet(size);
+                    return;
+                default:
+                    break;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // e.g. links across file systems, fall back to copying
+        }
+        if (strategy != Strategy.COPY) {
+            result.fallbacks.incrementAndGet();
+            Files.deleteIfExists(target);
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        result.bytesCopied.addAndGet(size);
+    }
+
+    /**
+     * Clones the library files into {@code commonDir} with one {@code cp --reflink=always}, and every library directory
+     * into its staging directory with one more. Cloning only succeeds on copy-on-write file systems like Btrfs and XFS;
+     * what can't be cloned, e.g. where there is no such {@code cp}, is added to {@code tasks} to be copied.
+     */
+    private static void reflink(Collection<File> files, File commonDir, Map<File, File> directories,
+            List<Path[]> tasks, Result result) throws IOException {
+        if (!files.isEmpty()) {
+            List<String> command = new ArrayList<>(Arrays.asList("cp", "--reflink=always"));
+            for (File file : files) {
+                command.add(file.getPath());
+            }
+            command.add(commonDir.getPath());
+            if (cp(command)) {
+                for (File file : files) {
+                    result.bytesLinked.addAndGet(file.length());
+                }
+            } else {
+                addFileTasks(files, commonDir, tasks);
+            }
+        }
+        for (Map.Entry<File, File> entry : directories.entrySet()) {
+            File source = entry.getKey();
+            File target = entry.getValue();
+            if (!target.isDirectory() && !target.mkdirs()) {
+                throw new IOException("Can't create " + target);
+            }
+            // the trailing "." clones the contents of the directory into the existing target
+            if (cp(Arrays.asList("cp", "-RL", "--reflink=always", source.getPath() + File.separator + ".",
+                    target.getPath()))) {
+                result.bytesLinked.addAndGet(FileUtils.sizeOfDirectory(source));
+            } else {
+                addDirectoryTasks(source, target, tasks);
+            }
+        }
+    }
+
+    /**
+     * Runs {@code command}, returning whether it succeeded. A command that can't be started, e.g. because there is no
+     * such program or its arguments are too long, fails.
+     */
+    private static boolean cp(List<String> command) throws IOException {
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            // drained, as Java 8 can't discard the output of a process portably
+            try (InputStream out = process.getInputStream()) {
+                IOUtils.consume(out);
+            }
+            return process.waitFor() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning library jars", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Replaces library jars by API stubs: jars with only the class files, stripped of their method bodies by
+ * {@link ClassFileStripper}. ProGuard reads nothing else from a library, so a stub gives the same result as the
+ * original while being much cheaper to read.
+ *
+ * <p>Stubs are cached by the digest of the original jar, as {@code <digest>/<jar name>} so they keep the name of the
+ * original. Class files that can't be parsed are kept unchanged.
+ */
+final class LibraryStubs {
+
+    /** Digests by path, size and modification time, for the rest of the Maven session. */
+    private static final Map<String, String> DIGESTS = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final int level;
+    final AtomicLong created = new AtomicLong();
+    final AtomicLong reused = new AtomicLong();
+    final AtomicLong bytesIn = new AtomicLong();
+    final AtomicLong bytesOut = new AtomicLong();
+
+    LibraryStubs(File directory) {
+        this(directory, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level deflate level of the stubs, which are only read by ProGuard
+     */
+    LibraryStubs(File directory, int level) {
+        this.directory = directory;
+        this.level = level;
+    }
+
+    /**
+     * Returns the stub of {@code library}, or {@code library} itself if it is not a jar file.
+     */
+    File stub(File library) throws IOException {
+        if (!library.isFile() || !library.getName().toLowerCase(Locale.ROOT).endsWith(".jar")) {
+            return library;
+        }
+        File stub = new File(new File(directory, digest(library)), library.getName());
+        if (stub.isFile()) {
+            reused.incrementAndGet();
+            return stub;
+        }
+        File dir = stub.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        File tmp = File.createTempFile(library.getName(), ".tmp", dir);
+        try {
+            write(library, tmp, level);
+            Files.move(tmp.toPath(), stub.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        created.incrementAndGet();
+        bytesIn.addAndGet(library.length());
+        bytesOut.addAndGet(stub.length());
+        return stub;
+    }
+
+    private static void write(File library, File stub, int level) throws IOException {
+        try (ZipFile in = new ZipFile(library);
+             ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(stub.toPath())))) {
+            out.setLevel(level);
+            Enumeration<? extends ZipEntry> entries = in.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                byte[] bytes;
+                try (InputStream entryIn = in.getInputStream(entry)) {
+                    bytes = IOUtils.toByteArray(entryIn);
+                }
+                try {
+                    bytes = ClassFileStripper.strip(bytes);
+                } catch (IOException e) {
+                    // leave it to ProGuard to report
+                }
+                ZipEntry stubEntry = new ZipEntry(entry.getName());
+                stubEntry.setTime(entry.getTime());
+                out.putNextEntry(stubEntry);
+                out.write(bytes);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static String digest(File library) throws IOException {
+        String key = library.getAbsolutePath() + '\n' + library.length() + '\n' + library.lastModified();
+        String digest = DIGESTS.get(key);
+        if (digest == null) {
+            digest = Digests.sha256(library);
+            DIGESTS.put(key, digest);
+        }
+        return digest;
+    }
+}
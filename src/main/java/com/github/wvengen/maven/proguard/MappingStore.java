@@ -0,0 +1,306 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The mapping file of {@code incremental} obfuscation, holding the latest mapping of every class.
+ *
+ * <p>A ProGuard mapping file is a sequence of class blocks: a line {@code original -> obfuscated:} followed by indented
+ * lines for the fields and methods of that class. Merging a new mapping replaces the blocks of the classes it maps,
+ * adds the new ones and drops the blocks of classes that are no longer part of the program, so the file doesn't grow
+ * with every build. Older stores that were appended to are compacted the same way, the last block of a class winning.
+ *
+ * <p>Files are read as a stream, keeping only the positions of the blocks, and blocks are copied as bytes, without
+ * decoding them. The result is written to a temporary file that replaces the store atomically, once the files it was
+ * read from are closed.
+ */
+final class MappingStore {
+
+    /**
+     * Counts of a merge.
+     */
+    static final class Result {
+        int classes;
+        int changed;
+        int added;
+        int removed;
+
+        @Override
+        public String toString() {
+            return classes + " classes, " + changed + " changed, " + added + " added, " + removed + " removed";
+        }
+    }
+
+    /** Key of the lines before the first class block, e.g. comments. */
+    private static final String PREAMBLE = "";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] ARROW = " -> ".getBytes(StandardCharsets.UTF_8);
+
+    private final File file;
+
+    MappingStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Merges {@code mapping} into the store.
+     *
+     * @param programClasses classes of the program, whose blocks are kept when {@code mapping} doesn't map them, e.g.
+     *                       because ProGuard removed them; {@code null} to keep all blocks
+     */
+    Result merge(File mapping, Set<String> programClasses) throws IOException {
+        File tmp;
+        Result result;
+        try (FileChannel store = file.isFile() ? FileChannel.open(file.toPath(), StandardOpenOption.READ) : null;
+             FileChannel update = FileChannel.open(mapping.toPath(), StandardOpenOption.READ)) {
+            Map<String, Block> merged = new LinkedHashMap<>();
+            if (store != null) {
+                parse(store, merged);
+            }
+            Map<String, Block> updates = new LinkedHashMap<>();
+            parse(update, updates);
+            result = merge(merged, updates, programClasses);
+            tmp = write(merged.values());
+        }
+        // moved once nothing is open, platforms like Windows don't replace files that are in use
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return result;
+    }
+
+    /**
+     * Merges the blocks of {@code updates} into {@code merged}.
+     */
+    private static Result merge(Map<String, Block> merged, Map<String, Block> updates, Set<String> programClasses)
+            throws IOException {
+        Result result = new Result();
+        if (programClasses != null) {
+            for (Iterator<String> names = merged.keySet().iterator(); names.hasNext(); ) {
+                String name = names.next();
+                if (!name.equals(PREAMBLE) && !updates.containsKey(name) && !programClasses.contains(name)) {
+                    names.remove();
+                    result.removed++;
+                }
+            }
+        }
+        for (Map.Entry<String, Block> update : updates.entrySet()) {
+            Block previous = merged.put(update.getKey(), update.getValue());
+            if (update.getKey().equals(PREAMBLE)) {
+                continue;
+            }
+            if (previous == null) {
+                result.added++;
+            } else if (!previous.sameContent(update.getValue())) {
+                result.changed++;
+            }
+        }
+        result.classes = merged.size() - (merged.containsKey(PREAMBLE) ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * Returns the names of the classes in {@code inputs}, jars or directories, in the dotted form of mapping files.
+     */
+    static Set<String> classNames(Collection<File> inputs) throws IOException {
+        Set<String> names = new HashSet<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                addClassNames(input, "", names);
+            } else if (input.isFile()) {
+                try (ZipFile zip = new ZipFile(input)) {
+                    Enumeration<? extends ZipEntry> entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        addClassName(entries.nextElement().getName(), names);
+                    }
+                } catch (IOException e) {
+                    // not a jar, e.g. a jmod
+                }
+            }
+        }
+        return names;
+    }
+
+    private static void addClassNames(File dir, String prefix, Set<String> names) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addClassNames(child, prefix + child.getName() + "/", names);
+            } else {
+                addClassName(prefix + child.getName(), names);
+            }
+        }
+    }
+
+    private static void addClassName(String path, Set<String> names) {
+        if (path.endsWith(".class") && !path.startsWith("META-INF/")) {
+            names.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+        }
+    }
+
+    /**
+     * Writes {@code blocks} to a temporary file next to the store and returns it.
+     */
+    private File write(Collection<Block> blocks) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Block block : blocks) {
+                ByteBuffer bytes = ByteBuffer.wrap(block.read());
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                if (!block.terminated) {
+                    out.write(ByteBuffer.wrap(new byte[] { '\n' }));
+                }
+            }
+        }
+        return tmp;
+    }
+
+    /**
+     * Adds the blocks of the mapping file read by {@code channel} to {@code blocks}, by original class name.
+     */
+    private static void parse(FileChannel channel, Map<String, Block> blocks) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        // the current line, as far as it may be a class line
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        boolean classLine = true;
+        String name = PREAMBLE;
+        long blockStart = 0;
+        long lineStart = 0;
+        long position = 0;
+        byte last = '\n';
+        while (channel.read(buffer) > 0) {
+            byte[] bytes = buffer.array();
+            int end = buffer.position();
+            int segmentStart = 0;
+            for (int i = 0; i < end; i++) {
+                if (position + i == lineStart) {
+                    classLine = bytes[i] != ' ' && bytes[i] != '\t' && bytes[i] != '#';
+                }
+                if (bytes[i] == '\n') {
+                    String className = classLine ? className(line, bytes, segmentStart, i) : null;
+                    if (className != null) {
+                        putBlock(blocks, name, channel, blockStart, lineStart, true);
+                        name = className;
+                        blockStart = lineStart;
+                    }
+                    line.reset();
+                    segmentStart = i + 1;
+                    lineStart = position + segmentStart;
+                }
+            }
+            if (classLine) {
+                line.write(bytes, segmentStart, end - segmentStart);
+            }
+            last = bytes[end - 1];
+            position += end;
+            buffer.clear();
+        }
+        if (lineStart < position && classLine) {
+            String className = className(line, new byte[0], 0, 0);
+            if (className != null) {
+                putBlock(blocks, name, channel, blockStart, lineStart, true);
+                name = className;
+                blockStart = lineStart;
+            }
+        }
+        putBlock(blocks, name, channel, blockStart, position, last == '\n');
+    }
+
+    private static void putBlock(Map<String, Block> blocks, String name, FileChannel channel, long start, long end,
+            boolean terminated) throws IOException {
+        if (end > start) {
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("The mapping of " + name + " is larger than 2 GB");
+            }
+            // a later block of the same class replaces the earlier one, in the position of the latter
+            blocks.remove(name);
+            blocks.put(name, new Block(channel, start, (int) (end - start), terminated));
+        }
+    }
+
+    /**
+     * Returns the original class name if the line is a class line, {@code a.B -> c:}. The line is {@code start}
+     * followed by {@code bytes} from {@code offset} up to {@code end}.
+     */
+    private static String className(ByteArrayOutputStream start, byte[] bytes, int offset, int end) {
+        start.write(bytes, offset, end - offset);
+        byte[] line = start.toByteArray();
+        int length = line.length;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0 || line[length - 1] != ':') {
+            return null;
+        }
+        for (int i = 0; i <= length - ARROW.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < ARROW.length && match; j++) {
+                match = line[i + j] == ARROW[j];
+            }
+            if (match) {
+                return new String(line, 0, i, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The bytes of a class block within a mapping file.
+     */
+    private static final class Block {
+        private final FileChannel channel;
+        private final long offset;
+        private final int length;
+        /** Whether the block ends with a line break, which only the last block of a file may not. */
+        final boolean terminated;
+
+        Block(FileChannel channel, long offset, int length, boolean terminated) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.terminated = terminated;
+        }
+
+        byte[] read() throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, offset + bytes.position()) < 0) {
+                    throw new IOException("Mapping file changed while merging");
+                }
+            }
+            return bytes.array();
+        }
+
+        boolean sameContent(Block other) throws IOException {
+            return length == other.length && Arrays.equals(read(), other.read());
+        }
+    }
+}
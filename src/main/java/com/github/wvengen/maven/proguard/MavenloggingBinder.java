@@ -1,17 +1,80 @@
 package com.github.wvengen.maven.proguard;
 
 import org.apache.maven.plugin.logging.Log;
+import org.apache.tools.ant.BuildEvent;
 import org.apache.tools.ant.DefaultLogger;
 import org.apache.tools.ant.Project;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
-public class MavenloggingBinder extends DefaultLogger {
+/**
+ * Passes the output of ProGuard to the Maven log, for {@code bindToMavenLogging}.
+ *
+ * <p>Lines are handed over through a bounded queue to a thread that logs them, so ProGuard doesn't wait for Maven's
+ * logging while it writes its output. Lines below the message output level are not logged at all. If the queue is
+ * full, informational lines are counted instead of logged, while warnings and errors wait for room. After a given
+ * number of similar {@code Note:} or {@code Warning:} lines, further ones are only counted, and summarized on
+ * {@link #close()}. All output, whatever its level, can also be written to a file.
+ */
+public class MavenloggingBinder extends DefaultLogger implements Closeable {
+
+    static final int DEFAULT_CAPACITY = 8192;
+
+    /** Names of classes, members and files in notes and warnings, which differ between otherwise similar lines. */
+    private static final Pattern DETAILS = Pattern.compile("'[^']*'|\\[[^\\]]*\\]|[\\w$<>-]+(?:[./][\\w$<>-]+)+|\\d+");
+
+    private static final Line END = new Line(null, Project.MSG_DEBUG);
 
     private final Log log;
+    private final BlockingQueue<Line> queue;
+    private final int similarLines;
+    private final Writer outputFile;
+    private final Thread drainer;
+    private final AtomicLong dropped = new AtomicLong();
+    /** Number of lines seen of every kind of note and warning, only used by the drainer. */
+    private final Map<String, Similar> similar = new LinkedHashMap<>();
+    private volatile IOException outputFileFailure;
+    private volatile boolean closed;
 
     public MavenloggingBinder(Log log) {
+        this(log, DEFAULT_CAPACITY, 0, null);
+    }
+
+    /**
+     * @param capacity lines that may wait to be logged
+     * @param similarLines similar notes or warnings to log before only counting them, or 0 to log all
+     * @param outputFile file to write all output to, or {@code null}
+     */
+    public MavenloggingBinder(Log log, int capacity, int similarLines, File outputFile) {
         this.log = log;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.similarLines = similarLines;
+        try {
+            this.outputFile = outputFile == null ? null
+                    : Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't write ProGuard output to " + outputFile + ": " + e, e);
+        }
+        drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "proguard-log");
+        drainer.setDaemon(true);
+        drainer.start();
     }
 
     @Override
@@ -24,6 +87,113 @@ public class MavenloggingBinder extends DefaultLogger {
 
     }
 
+    @Override
+    public void messageLogged(BuildEvent event) {
+        if (event.getMessage() != null) {
+            log(event.getMessage(), event.getPriority());
+        }
+    }
+
+    /**
+     * Logs a line of ProGuard output with Ant {@code priority}, which a {@code Warning:} or {@code Error:} prefix
+     * raises.
+     */
+    void log(String message, int priority) {
+        if (outputFile != null && outputFileFailure == null) {
+            try {
+                // one write, so lines of the output and error pumps don't interleave
+                outputFile.write(message + '\n');
+            } catch (IOException e) {
+                outputFileFailure = e;
+            }
+        }
+        if (message.startsWith("Error:")) {
+            priority = Project.MSG_ERR;
+        } else if (message.startsWith("Warning:")) {
+            priority = Math.min(priority, Project.MSG_WARN);
+        }
+        if (priority > msgOutputLevel) {
+            return;
+        }
+        if (closed) {
+            printMessage(message, null, priority);
+            return;
+        }
+        Line line = new Line(message, priority);
+        if (priority <= Project.MSG_WARN) {
+            try {
+                queue.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                printMessage(message, null, priority);
+            }
+        } else if (!queue.offer(line)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        try {
+            for (Line line = queue.take(); line != END; line = queue.take()) {
+                if (isSummarized(line)) {
+                    continue;
+                }
+                printMessage(line.message, null, line.priority);
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Returns whether {@code line} is one of too many similar notes or warnings, counting it.
+     */
+    private boolean isSummarized(Line line) {
+        if (similarLines <= 0 || !(line.message.startsWith("Note:") || line.message.startsWith("Warning:"))) {
+            return false;
+        }
+        String kind = DETAILS.matcher(line.message).replaceAll("...");
+        Similar count = similar.get(kind);
+        if (count == null) {
+            count = new Similar(line.priority);
+            similar.put(kind, count);
+        }
+        return ++count.lines > similarLines;
+    }
+
+    /**
+     * Logs the remaining lines and the summaries, and closes the output file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drainer.interrupt();
+        }
+        for (Map.Entry<String, Similar> entry : similar.entrySet()) {
+            int more = entry.getValue().lines - similarLines;
+            if (more > 0) {
+                printMessage(more + " more like: " + entry.getKey(), null, entry.getValue().priority);
+            }
+        }
+        if (dropped.get() > 0) {
+            log.info(dropped.get() + " lines of ProGuard output were not logged, Maven's log couldn't keep up");
+        }
+        if (outputFile != null) {
+            outputFile.close();
+            if (outputFileFailure != null) {
+                throw outputFileFailure;
+            }
+        }
+    }
+
     @Override
     protected void printMessage(String message, PrintStream stream, int priority) {
         switch (priority) {
@@ -46,4 +216,23 @@ public class MavenloggingBinder extends DefaultLogger {
             }
         }
     }
+
+    private static final class Line {
+        final String message;
+        final int priority;
+
+        Line(String message, int priority) {
+            this.message = message;
+            this.priority = priority;
+        }
+    }
+
+    private static final class Similar {
+        final int priority;
+        int lines;
+
+        Similar(int priority) {
+            this.priority = priority;
+        }
+    }
 }
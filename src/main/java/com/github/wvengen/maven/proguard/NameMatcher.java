@@ -0,0 +1,130 @@
+package com.github.wvengen.maven.proguard;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled form of a groupId or artifactId filter, where {@code *} matches any sequence of characters.
+ *
+ * <p>Plain names are compared for equality and names ending in their only {@code *} by prefix; only other wildcard
+ * positions need a regular expression.
+ */
+abstract class NameMatcher {
+
+    private static final String WILDCARD = "*";
+
+    enum Kind {
+        NONE, ANY, EXACT, PREFIX, REGEX
+    }
+
+    final String source;
+
+    private NameMatcher(String source) {
+        this.source = source;
+    }
+
+    abstract Kind kind();
+
+    abstract boolean matches(String value);
+
+    /**
+     * Returns the literal part of an {@link Kind#EXACT} or {@link Kind#PREFIX} matcher.
+     */
+    String literal() {
+        return source;
+    }
+
+    /**
+     * Compiles {@code filter}; a {@code null} filter matches nothing.
+     *
+     * @throws IllegalArgumentException if the filter can't be compiled
+     */
+    static NameMatcher compile(String filter) {
+        if (filter == null) {
+            return new NameMatcher(null) {
+                @Override
+                Kind kind() {
+                    return Kind.NONE;
+                }
+
+                @Override
+                boolean matches(String value) {
+                    return false;
+                }
+            };
+        }
+        if (WILDCARD.equals(filter)) {
+            return new NameMatcher(filter) {
+                @Override
+                Kind kind() {
+                    return Kind.ANY;
+                }
+
+                @Override
+                boolean matches(String value) {
+                    return true;
+                }
+            };
+        }
+        int wildcard = filter.indexOf(WILDCARD);
+        if (wildcard < 0) {
+            return new NameMatcher(filter) {
+                @Override
+                Kind kind() {
+                    return Kind.EXACT;
+                }
+
+                @Override
+                boolean matches(String value) {
+                    return source.equals(value);
+                }
+            };
+        }
+        if (wildcard == filter.length() - 1) {
+            final String prefix = filter.substring(0, wildcard);
+            return new NameMatcher(filter) {
+                @Override
+                Kind kind() {
+                    return Kind.PREFIX;
+                }
+
+                @Override
+                boolean matches(String value) {
+                    return value.startsWith(prefix);
+                }
+
+                @Override
+                String literal() {
+                    return prefix;
+                }
+            };
+        }
+        final Pattern pattern;
+        try {
+            pattern = Pattern.compile(escapeRegex(filter));
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid regex filter: " + filter, e);
+        }
+        return new NameMatcher(filter) {
+            @Override
+            Kind kind() {
+                return Kind.REGEX;
+            }
+
+            @Override
+            boolean matches(String value) {
+                return pattern.matcher(value).matches();
+            }
+        };
+    }
+
+    /**
+     * Escape regex and keep wildcard.<br>
+     * {@link Pattern#quote(String)} method wrap string between '\Q' for starting ignoring and '\E' for ending ignoring,<br>
+     * so we don't want to escape wildcard.<br>
+     * 'myregexpart1*myregexpart2' becomes '\Qmyregexpart1\E.*\Qmyregexpart2\E'.
+     */
+    private static String escapeRegex(String str) {
+        return Pattern.quote(str).replace(WILDCARD, "\\E.*\\Q");
+    }
+}
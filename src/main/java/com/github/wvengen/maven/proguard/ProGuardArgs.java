@@ -0,0 +1,86 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads back the file arguments of a ProGuard argument list as built by {@link ProGuardMojo}, where every option that
+ * takes a file is followed by a separate argument like {@code 'path'(filter)}.
+ */
+final class ProGuardArgs {
+
+    static final String INJARS = "-injars";
+    static final String OUTJARS = "-outjars";
+    static final String LIBRARYJARS = "-libraryjars";
+    static final String INCLUDE = "-include";
+    static final String APPLYMAPPING = "-applymapping";
+
+    private ProGuardArgs() {
+    }
+
+    /**
+     * Returns the files given to any of {@code options}, in argument order. Relative paths are resolved against
+     * {@code baseDir}.
+     */
+    static List<File> files(List<String> args, File baseDir, String... options) {
+        List<String> wanted = Arrays.asList(options);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.size() - 1; i++) {
+            if (wanted.contains(args.get(i))) {
+                files.add(resolve(path(args.get(i + 1)), baseDir));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the path of a file argument, without quotes and filter.
+     */
+    static String path(String value) {
+        if (!value.isEmpty() && (value.charAt(0) == '\'' || value.charAt(0) == '"')) {
+            int end = value.indexOf(value.charAt(0), 1);
+            if (end > 0) {
+                return value.substring(1, end);
+            }
+        }
+        int filter = value.indexOf('(');
+        return filter >= 0 ? value.substring(0, filter) : value;
+    }
+
+    /**
+     * Returns the filter of a file argument, without parentheses, or {@code null} if it has none.
+     */
+    static String filter(String value) {
+        int start = value.indexOf('(', path(value).length());
+        if (start < 0 || !value.endsWith(")")) {
+            return null;
+        }
+        return value.substring(start + 1, value.length() - 1);
+    }
+
+    /**
+     * Returns the file of {@code path}, resolved against {@code baseDir} if relative.
+     */
+    static File resolve(String path, File baseDir) {
+        File file = new File(path);
+        return file.isAbsolute() || baseDir == null ? file : new File(baseDir, path);
+    }
+
+    /**
+     * Returns the words of ProGuard configuration text, without {@code #} comments. Quotes are not taken into account.
+     */
+    static List<String> words(String configuration) {
+        List<String> words = new ArrayList<>();
+        for (String line : configuration.split("\n")) {
+            int comment = line.indexOf('#');
+            for (String word : (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local cache of ProGuard outputs, addressed by a digest of everything that goes into a ProGuard run.
+ *
+ * <p>The key covers the complete ProGuard argument list, the contents of all {@code -injars}, {@code -libraryjars},
+ * {@code -include} and {@code -applymapping} files named in it and the ProGuard jars themselves. Files included from
+ * within configuration files are not followed. Paths below the base directory enter the key relative to it, so
+ * checkouts of the same project in different places share entries.
+ *
+ * <p>Each entry is a directory named after its key, holding a copy of every output under its file name and the list of
+ * those names, so an entry that lost an output is told apart from a run that didn't write it.
+ */
+final class ProGuardBuildCache {
+
+    /** The names of the outputs in an entry, one per line. */
+    private static final String OUTPUTS = ".outputs";
+
+    private final File directory;
+
+    ProGuardBuildCache(File directory) {
+        this.directory = directory;
+    }
+
+    String key(List<String> args, Collection<File> proguardJars, File baseDir) throws IOException {
+        MessageDigest digest = Digests.sha256();
+        Digests.update(digest, ConfigurationFile.text(args, baseDir, baseDir));
+        List<File> inputs = ProGuardArgs.files(args, baseDir, ProGuardArgs.INJARS, ProGuardArgs.LIBRARYJARS,
+                ProGuardArgs.INCLUDE, ProGuardArgs.APPLYMAPPING);
+        for (File input : inputs) {
+            Digests.update(digest, relativePath(input, baseDir));
+            Digests.update(digest, input);
+        }
+        for (File jar : proguardJars) {
+            Digests.update(digest, jar.getName());
+            Digests.update(digest, jar);
+        }
+        return Digests.hex(digest.digest());
+    }
+
+    private static String relativePath(File file, File baseDir) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (baseDir != null) {
+            Path base = baseDir.toPath().toAbsolutePath().normalize();
+            if (path.startsWith(base)) {
+                return base.relativize(path).toString().replace(File.separatorChar, '/');
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * Copies the cached outputs for {@code key} over {@code outputs}. Returns {@code false} if there is no complete
+     * entry for {@code key}, leaving the outputs untouched; an incomplete entry is removed, so it can be stored again.
+     */
+    boolean restore(String key, Collection<File> outputs) throws IOException {
+        File entry = new File(directory, key);
+        File outputsFile = new File(entry, OUTPUTS);
+        if (!outputsFile.isFile()) {
+            if (entry.isDirectory()) {
+                FileUtils.deleteDirectory(entry);
+            }
+            return false;
+        }
+        Set<String> stored = new HashSet<>(Arrays.asList(
+                new String(Files.readAllBytes(outputsFile.toPath()), StandardCharsets.UTF_8).split("\n")));
+        for (File output : outputs) {
+            if (stored.contains(output.getName()) && !new File(entry, output.getName()).exists()) {
+                FileUtils.deleteDirectory(entry);
+                return false;
+            }
+        }
+        for (File output : outputs) {
+            if (!stored.contains(output.getName())) {
+                // the run didn't write it
+                continue;
+            }
+            File cached = new File(entry, output.getName());
+            if (output.isDirectory()) {
+                FileUtils.deleteDirectory(output);
+            }
+            if (cached.isDirectory()) {
+                FileUtils.copyDirectory(cached, output);
+            } else {
+                FileUtils.copyFile(cached, output);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the existing {@code outputs} under {@code key}. The entry only becomes visible once complete.
+     */
+    void store(String key, Collection<File> outputs) throws IOException {
+        File entry = new File(directory, key);
+        if (entry.exists()) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File tmp = Files.createTempDirectory(directory.toPath(), key + ".").toFile();
+        try {
+            StringBuilder names = new StringBuilder();
+            for (File output : outputs) {
+                if (output.isDirectory()) {
+                    FileUtils.copyDirectory(output, new File(tmp, output.getName()));
+                } else if (output.isFile()) {
+                    FileUtils.copyFile(output, new File(tmp, output.getName()));
+                } else {
+                    continue;
+                }
+                names.append(output.getName()).append('\n');
+            }
+            Files.write(new File(tmp, OUTPUTS).toPath(), names.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (entry.exists()) {
+                // stored concurrently by another build
+                return;
+            }
+            throw e;
+        } finally {
+            if (tmp.exists()) {
+                FileUtils.deleteDirectory(tmp);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Main class of a forked ProGuard JVM that records timing, heap and garbage collection statistics of the run.
+ *
+ * <p>Arguments are the statistics file, the ProGuard main class and the ProGuard arguments. The statistics are written
+ * as properties from a shutdown hook, because ProGuard leaves through {@code System.exit}.
+ *
+ * <p>This class must not depend on any Maven classes: it runs with only the ProGuard class path and the plugin jar.
+ */
+public final class ProGuardLauncher {
+
+    static final String JVM_START = "jvmStart";
+    static final String MAIN_START = "mainStart";
+    static final String MAIN_END = "mainEnd";
+    static final String PEAK_HEAP = "peakHeap";
+    static final String GC_COUNT = "gcCount";
+    static final String GC_TIME = "gcTime";
+
+    private ProGuardLauncher() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long mainStart = System.currentTimeMillis();
+        final File statsFile = new File(args[0]);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                Properties stats = collect();
+                stats.setProperty(JVM_START, String.valueOf(ManagementFactory.getRuntimeMXBean().getStartTime()));
+                stats.setProperty(MAIN_START, String.valueOf(mainStart));
+                stats.setProperty(MAIN_END, String.valueOf(System.currentTimeMillis()));
+                try (OutputStream out = new FileOutputStream(statsFile)) {
+                    stats.store(out, null);
+                } catch (IOException e) {
+                    System.err.println("Can't write ProGuard statistics to " + statsFile + ": " + e);
+                }
+            }
+        });
+        Class.forName(args[1]).getMethod("main", String[].class)
+                .invoke(null, (Object) Arrays.copyOfRange(args, 2, args.length));
+    }
+
+    /**
+     * Returns the peak heap usage since the last {@link #resetPeakHeap()} and the garbage collection totals of this JVM.
+     */
+    static Properties collect() {
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcTime += Math.max(0, collector.getCollectionTime());
+        }
+        Properties stats = new Properties();
+        stats.setProperty(PEAK_HEAP, String.valueOf(peakHeap));
+        stats.setProperty(GC_COUNT, String.valueOf(gcCount));
+        stats.setProperty(GC_TIME, String.valueOf(gcTime));
+        return stats;
+    }
+
+    static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+}
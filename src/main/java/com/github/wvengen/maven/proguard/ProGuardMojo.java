@@ -20,23 +20,50 @@
  */
 package com.github.wvengen.maven.proguard;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -54,6 +81,8 @@ import org.apache.tools.ant.DefaultLogger;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.Java;
 import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.codehaus.plexus.archiver.jar.Manifest;
+import org.codehaus.plexus.util.SelectorUtils;
 
 /**
  * Runs ProGuard as part of the build.
@@ -131,6 +160,46 @@ public class ProGuardMojo extends AbstractMojo {
 	 */
 	private boolean putLibraryJarsInTempDir;
 
+	/**
+	 * Set this to 'true' to pass API stubs of the library jars to ProGuard instead of the jars themselves. A stub only
+	 * holds the class files of a library, without method bodies, which is all ProGuard reads from a library. Stubs are
+	 * created once per library content in {@link #libraryStubDirectory}.
+	 *
+	 * @parameter property="proguard.stubLibraryJars" default-value="false"
+	 */
+	private boolean stubLibraryJars;
+
+	/**
+	 * Directory holding the library stubs of {@link #stubLibraryJars}.
+	 *
+	 * @parameter property="proguard.libraryStubDirectory" default-value="${project.build.directory}/proguard-library-stubs"
+	 */
+	private File libraryStubDirectory;
+
+	/**
+	 * How {@link #putLibraryJarsInTempDir} puts the libraries into the temporary directory: {@code copy},
+	 * {@code hardlink}, {@code symlink} or {@code reflink}. Libraries that can't be linked, e.g. because they are on
+	 * another file system, are copied.
+	 *
+	 * @parameter property="proguard.libraryStaging" default-value="copy"
+	 */
+	private String libraryStaging = "copy";
+
+	/**
+	 * Number of threads staging libraries for {@link #putLibraryJarsInTempDir}, or 0 to use one per processor.
+	 *
+	 * @parameter default-value="0"
+	 */
+	private int libraryStagingThreads;
+
+	/**
+	 * Set this to 'true' to keep the temporary directory of {@link #putLibraryJarsInTempDir} after the build and
+	 * reuse it as long as the libraries don't change, instead of staging them again.
+	 *
+	 * @parameter property="proguard.reuseStagedLibraryJars" default-value="false"
+	 */
+	private boolean reuseStagedLibraryJars;
+
 	/**
 	 * Use this parameter if your command line arguments become too long and execution fails.
      *
@@ -309,11 +378,123 @@ public class ProGuardMojo extends AbstractMojo {
 	 */
 	protected List<Artifact> pluginArtifacts;
 
+	/**
+	 * The projects of the reactor, which identify the build for the {@link DependencyScanCache}.
+	 *
+	 * @parameter default-value="${reactorProjects}"
+	 * @readonly
+	 */
+	private List<MavenProject> reactorProjects;
+
 	/**
 	 * @component
 	 */
 	private MavenProjectHelper projectHelper;
 
+	/**
+	 * Further ProGuard runs on the inputs of this execution, each with its own classifier and additional options, e.g.
+	 * a minimal API jar next to the fully obfuscated one. Variants run at the same time as the main run, up to
+	 * {@link #variantThreads} at a time, and share its dependency resolution, library staging and JVM settings.
+	 *
+	 * <p>A variant writes {@code <injar name>-<classifier>.<attachArtifactType>} plus mapping and seed files with the
+	 * classifier added to their names, which are attached with the variant classifier when {@link #attach} is set. The
+	 * assembly and {@link #buildCache} only apply to the main run.
+	 *
+	 * @parameter
+	 */
+	private List<Variant> variants;
+
+	/**
+	 * Number of {@link #variants} run at the same time, besides the main run, or 0 for one per processor.
+	 *
+	 * @parameter property="proguard.variantThreads" default-value="0"
+	 */
+	private int variantThreads;
+
+	/**
+	 * Set this to 'true' to split the injars into shards that don't refer to each other's classes or share packages,
+	 * and to run ProGuard on every shard at the same time, up to {@link #shardThreads} at a time. The outjars of the
+	 * shards are merged into the outjar, the first entry of any name winning, and their mapping and seed files are
+	 * concatenated. Useful with {@link #includeDependencyInjar} or {@link #assembly} inclusions that bring in many
+	 * independent jars.
+	 *
+	 * <p>Every shard runs with the whole configuration, so its keep rules have to keep what the shard needs. References
+	 * by name only, e.g. from service files or through reflection, don't connect injars. ProGuard runs once as usual
+	 * if the injars all depend on each other, if the outjar is a directory, with more than one outjar, with
+	 * {@code -applymapping}, {@code -repackageclasses}, {@code -flattenpackagehierarchy}, {@code -printusage},
+	 * {@code -printconfiguration} or {@code -dump}, and when obfuscating without {@code -keeppackagenames}, as the
+	 * shards would give packages the same names.
+	 *
+	 * @parameter property="proguard.sharding" default-value="false"
+	 */
+	private boolean sharding;
+
+	/**
+	 * Number of ProGuard {@link #sharding} runs at the same time, or 0 for the number of available processors.
+	 *
+	 * @parameter property="proguard.shardThreads" default-value="0"
+	 */
+	private int shardThreads;
+
+	/**
+	 * How the assembly of the ProGuard result and the {@code library} inclusions is written: {@code archiver} re-reads
+	 * and recompresses everything with the Maven archiver, {@code stream} copies the compressed entries of the jars
+	 * as they are and only compresses the manifest, the Maven descriptor and files from directories. The first entry
+	 * of any name wins.
+	 *
+	 * <p>{@code stream} does not support zip64 jars, {@code archive/manifestFile} or {@code archive/index}, and falls
+	 * back to {@code archiver} for them.
+	 *
+	 * @parameter property="proguard.assemblyMerge" default-value="archiver"
+	 */
+	private String assemblyMerge = ASSEMBLY_MERGE_ARCHIVER;
+
+	/**
+	 * Set this to 'true' to write the outjars, after ProGuard and the assembly, so that the same inputs give
+	 * byte-identical jars: entries sorted by name with the manifest first, all with the time of
+	 * {@link #outputTimestamp}, and all compressed with {@link #compressionLevel}. Caches further down the line, such
+	 * as image layers or remote build caches, then hit for unchanged outputs.
+	 * The {@code Built-By} and {@code Build-Jdk} manifest attributes and the date comment of the {@code pom.properties}
+	 * of the Maven descriptor are left out.
+	 *
+	 * <p>The jars are compressed by the JVM running Maven, so different JVMs may still compress differently. Outjars
+	 * that are directories, or jars that need zip64, are left as they are.
+	 *
+	 * @parameter property="proguard.reproducible" default-value="false"
+	 */
+	private boolean reproducible;
+
+	/**
+	 * The time of the entries of {@link #reproducible} outjars, as an ISO 8601 date and time with offset, e.g.
+	 * {@code 2024-01-01T00:00:00Z}, or as seconds since the epoch. Defaults to 1980-01-01T00:00:00Z, the earliest time
+	 * a jar can hold, if not set.
+	 *
+	 * @parameter default-value="${project.build.outputTimestamp}"
+	 */
+	private String outputTimestamp;
+
+	/**
+	 * The deflate level of the jars that are outputs of this execution: the outjar of ProGuard, unless something else
+	 * writes it again, the assembly and the {@link #reproducible} outjars. From 0, storing entries uncompressed, over
+	 * 1, the fastest, to 9, the smallest, or -1 for the default level.
+	 *
+	 * <p>ProGuard and the archiver of {@link #assemblyMerge} {@code archiver} can only compress or store: with 0
+	 * ProGuard gets {@code -dontcompress} and the archiver stores, with any other level they compress as usual.
+	 *
+	 * @parameter property="proguard.compressionLevel" default-value="-1"
+	 */
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * The deflate level of the jars only read again within this execution: the outjar of ProGuard when the archiver of
+	 * the {@link #assembly} or {@link #reproducible} writes it again, and the {@link #stubLibraryJars} stubs. Like
+	 * {@link #compressionLevel}, where 0 is usually fastest for these jars: it saves compressing entries that are
+	 * decompressed again right after.
+	 *
+	 * @parameter property="proguard.intermediateCompressionLevel" default-value="-1"
+	 */
+	private int intermediateCompressionLevel = Deflater.DEFAULT_COMPRESSION;
+
 	/**
 	 * The Jar archiver.
 	 *
@@ -330,12 +511,133 @@ public class ProGuardMojo extends AbstractMojo {
 	protected MavenArchiveConfiguration archive = new MavenArchiveConfiguration();
 
 	/**
-	 * The max memory the forked Java process should use, e.g. 256m
+	 * The max memory the forked Java process should use, e.g. 256m, or 'auto' to estimate it from the size of the
+	 * injars and libraryjars of each execution, up to three quarters of the physical memory.
 	 *
 	 * @parameter
 	 */
 	protected String maxMemory;
 
+	/**
+	 * Additional arguments of the forked Java process, e.g. {@code -XX:+UseStringDeduplication}.
+	 *
+	 * @parameter
+	 */
+	private List<String> jvmArgs;
+
+	/**
+	 * Garbage collector of the forked Java process: {@code serial}, {@code parallel}, {@code g1}, {@code z} or
+	 * {@code shenandoah}. By default the JVM chooses.
+	 *
+	 * @parameter property="proguard.gc"
+	 */
+	private String gc;
+
+	/**
+	 * Max number of ProGuard runs at the same time, or 0 for no limit. Limits the runs of all modules of a parallel
+	 * build ({@code mvn -T}), including {@link #variants}, and, through locks in {@link #processLockDirectory}, the runs
+	 * of other builds on the same machine using the same directory. Runs beyond the limit wait in the order they came.
+	 *
+	 * @parameter property="proguard.maxProcesses" default-value="0"
+	 */
+	private int maxProcesses;
+
+	/**
+	 * Max sum of the {@link #maxMemory} of the ProGuard runs at the same time within a build, e.g. 8g, or 'auto' for
+	 * three quarters of the physical memory. A run without {@link #maxMemory} counts with the default max heap of the
+	 * JVM, a run with {@link #executionMode} {@code inProcess} counts with none. A run needing more than the budget on
+	 * its own still runs, alone. By default there is no budget.
+	 *
+	 * @parameter property="proguard.memoryBudget"
+	 */
+	private String memoryBudget;
+
+	/**
+	 * Directory of the lock files that limit the ProGuard runs of all builds on a machine to {@link #maxProcesses}.
+	 *
+	 * @parameter property="proguard.processLockDirectory" default-value="${java.io.tmpdir}/proguard-maven-plugin-slots"
+	 */
+	private File processLockDirectory;
+
+	/**
+	 * Set this to 'true' to list the classes of all injars and libraries before running ProGuard, report the classes
+	 * that more than one of them defines, and leave out the libraries whose classes all come from the injars or from
+	 * earlier libraries, such as shaded copies. ProGuard would ignore those classes anyway, after parsing them.
+	 *
+	 * <p>Injars with a filter other than the manifest and Maven descriptor filters of this plugin don't count as
+	 * providing their classes.
+	 *
+	 * @parameter property="proguard.classpathDeduplication" default-value="false"
+	 */
+	private boolean classpathDeduplication;
+
+	/**
+	 * Set this to 'true' to start the forked Java process from a class data sharing archive of the ProGuard class path.
+	 * The first fork creates the archive in {@link #classDataSharingDirectory}, later forks with the same JVM and
+	 * ProGuard jars start from it. Requires Java 13 or later.
+	 *
+	 * @parameter property="proguard.classDataSharing" default-value="false"
+	 */
+	private boolean classDataSharing;
+
+	/**
+	 * Directory holding the archives of {@link #classDataSharing}.
+	 *
+	 * @parameter property="proguard.classDataSharingDirectory" default-value="${user.home}/.m2/proguard-cds"
+	 */
+	private File classDataSharingDirectory;
+
+	/**
+	 * Set this to 'true' to skip ProGuard when an earlier run with byte-identical inputs is found in
+	 * {@link #buildCacheDirectory}. The outjar, mapping and seed files are then restored from that run.
+	 *
+	 * <p>Files included from within ProGuard configuration files are not part of the cache key.
+	 *
+	 * @parameter property="proguard.buildCache" default-value="false"
+	 */
+	private boolean buildCache;
+
+	/**
+	 * Directory holding the outputs of earlier ProGuard runs, see {@link #buildCache}.
+	 *
+	 * @parameter property="proguard.buildCacheDirectory" default-value="${user.home}/.m2/proguard-cache"
+	 */
+	private File buildCacheDirectory;
+
+	/**
+	 * Set this to 'true' to skip ProGuard, and the renaming and deleting of jars before it, when its inputs, the
+	 * configuration and its outputs are all as they were after the last run of this execution. Inputs are compared by
+	 * size and modification time, and by content if they changed. Jars are compared by the names and contents of their
+	 * entries, so injars that were only rebuilt, with new timestamps, don't cause a run.
+	 *
+	 * <p>ProGuard processes the whole program at once, so any changed class still means a run over all classes.
+	 * Nothing is read from jars whose size and modification time are unchanged. The state of the last run is kept in
+	 * {@code proguard_uptodate.properties} in {@link #outputDirectory}.
+	 *
+	 * @parameter property="proguard.upToDateCheck" default-value="false"
+	 */
+	private boolean upToDateCheck;
+
+	/**
+	 * Set this to 'true' to write the duration of every phase of the execution, and the peak heap and garbage collection
+	 * time of ProGuard, to {@code proguard_report.json} and {@code proguard_report.csv} in {@link #outputDirectory}.
+	 *
+	 * <p>Heap and garbage collection statistics are not available with {@link #executionMode} {@code daemon}.
+	 *
+	 * @parameter property="proguard.buildReport" default-value="false"
+	 */
+	private boolean buildReport;
+
+	/**
+	 * Set this to 'true' to count the notes and warnings of ProGuard by kind, such as unresolved references, duplicate
+	 * definitions and reflection, by the package and input jar of the class they are about and by the package of the
+	 * class it references. The counts are written to {@code proguard_warnings.json} in {@link #outputDirectory}, also
+	 * if ProGuard fails.
+	 *
+	 * @parameter property="proguard.warningsReport" default-value="false"
+	 */
+	private boolean warningsReport;
+
 	/**
 	 * ProGuard main class name.
 	 *
@@ -343,6 +645,28 @@ public class ProGuardMojo extends AbstractMojo {
 	 */
 	protected String proguardMainClass = "proguard.ProGuard";
 
+	/**
+	 * How ProGuard is run. {@code fork} starts a new JVM for every execution. {@code inProcess} runs ProGuard inside the
+	 * Maven JVM, in an isolated class loader that is reused by all executions of the build using the same ProGuard jars.
+	 * {@code daemon} hands the run to a long-lived ProGuard worker process that is shared by all builds using the same
+	 * ProGuard jars, {@link #maxMemory} and JVM arguments, and falls back to {@code fork} when the worker fails.
+	 *
+	 * <p>{@code inProcess} ignores {@link #maxMemory}, {@link #jvmArgs} and {@link #gc}. {@code inProcess} and
+	 * {@code daemon} only support the default {@link #proguardMainClass}. In all modes the output of ProGuard goes
+	 * through {@link #silent}, {@link #bindToMavenLogging} and {@link #warningsReport}; in process, that is everything
+	 * the threads of the run write to the console.
+	 *
+	 * @parameter property="proguard.executionMode" default-value="fork"
+	 */
+	protected String executionMode = EXECUTION_MODE_FORK;
+
+	/**
+	 * Seconds after which an unused ProGuard worker of {@link #executionMode} {@code daemon} exits.
+	 *
+	 * @parameter property="proguard.daemonIdleTimeout" default-value="600"
+	 */
+	protected int daemonIdleTimeout = 600;
+
 	/**
 	 * Sets the name of the ProGuard mapping file.
 	 *
@@ -369,6 +693,9 @@ public class ProGuardMojo extends AbstractMojo {
 	 * "https://www.guardsquare.com/en/proguard/manual/examples#incremental">
 	 * incremental obfuscation</a>
 	 *
+	 * <p>The mapping of every run is merged into {@link #applyMappingFile}: the mapping of a class replaces its earlier
+	 * one, and classes no longer in the injars are dropped.
+	 *
 	 * @parameter default-value="false"
 	 */
 	private boolean incremental;
@@ -395,8 +722,65 @@ public class ProGuardMojo extends AbstractMojo {
 	 */
 	private boolean bindToMavenLogging;
 
+	/**
+	 * The lowest level of ProGuard output that {@link #bindToMavenLogging} passes to the Maven log: error, warn, info
+	 * or debug. By default info, or debug if Maven runs with debug logging. ProGuard lines starting with
+	 * {@code Warning:} are logged as warnings.
+	 *
+	 * @parameter property="proguard.mavenLoggingLevel"
+	 */
+	private String mavenLoggingLevel;
+
+	/**
+	 * The number of similar {@code Note:} or {@code Warning:} lines of ProGuard that {@link #bindToMavenLogging}
+	 * logs, before it only counts them and logs how many more there were at the end. Lines are similar if they only
+	 * differ in names of classes, members and files. 0 logs all.
+	 *
+	 * @parameter property="proguard.mavenLoggingSimilarLines" default-value="0"
+	 */
+	private int mavenLoggingSimilarLines;
+
+	/**
+	 * A file to write all ProGuard output to with {@link #bindToMavenLogging}, whatever {@link #mavenLoggingLevel}
+	 * lets through to the Maven log. The output of the {@link #variants} goes to files with their classifier added.
+	 *
+	 * @parameter property="proguard.outputFile"
+	 */
+	private File proguardOutputFile;
+
 	private Log log;
 
+	private BuildReport report;
+
+	private DependencyScanCache dependencyScanCache;
+
+	private DependencyScanCache.FilterVerdicts exclusionVerdicts;
+
+	private LibraryStubs libraryStubs;
+
+	private String resolvedMaxMemory;
+
+	/** The entry time of {@link #reproducible} outjars. */
+	private long reproducibleTime;
+
+	/** The program and library inputs, for the artifacts in the {@link #warningsReport}. */
+	private List<File> warningsReportInputs = Collections.emptyList();
+
+	private static final String EXECUTION_MODE_FORK = "fork";
+	private static final String EXECUTION_MODE_IN_PROCESS = "inProcess";
+	private static final String EXECUTION_MODE_DAEMON = "daemon";
+
+	private static final String DEFAULT_PROGUARD_MAIN_CLASS = "proguard.ProGuard";
+
+	private static final String ASSEMBLY_MERGE_ARCHIVER = "archiver";
+	private static final String ASSEMBLY_MERGE_STREAM = "stream";
+	/** The date comment {@link Properties#store} writes, e.g. {@code #Tue Oct 01 12:00:00 UTC 2024}. */
+	private static final Pattern PROPERTIES_DATE =
+			Pattern.compile("#\\w{3} \\w{3} [ \\d]\\d \\d\\d:\\d\\d:\\d\\d \\S+ \\d{4}");
+
+	/** 1980-01-01T00:00:00Z, the earliest time of a zip entry. */
+	private static final long DEFAULT_OUTPUT_TIMESTAMP = 315532800000L;
+
 	/**
 	 * ProGuard filter which excludes the {@code MANIFEST.MF} file
 	 */
@@ -410,7 +794,7 @@ public class ProGuardMojo extends AbstractMojo {
 	 * ProGuard docs: Names with special characters like spaces and parentheses must be quoted with single or double
 	 * quotes.
 	 */
-	private String fileNameToString(String fileName) {
+	static String fileNameToString(String fileName) {
 		return "'" + fileName + "'";
 	}
 
@@ -421,7 +805,7 @@ public class ProGuardMojo extends AbstractMojo {
 	/**
 	 * Creates a ProGuard classpath filter string.
 	 */
-	private String createFilterString(List<String> names) {
+	static String createFilterString(List<String> names) {
 		if (names.isEmpty()) {
 			return "";
 		}
@@ -429,7 +813,7 @@ public class ProGuardMojo extends AbstractMojo {
 		return "(" + String.join(",", names) + ")";
 	}
 
-	private String createFilterString(String... names) {
+	static String createFilterString(String... names) {
 		return createFilterString(Arrays.asList(names));
 	}
 
@@ -459,6 +843,41 @@ public class ProGuardMojo extends AbstractMojo {
 			return;
 		}
 
+		if (!EXECUTION_MODE_FORK.equals(executionMode) && !EXECUTION_MODE_IN_PROCESS.equals(executionMode)
+				&& !EXECUTION_MODE_DAEMON.equals(executionMode)) {
+			throw new MojoFailureException("Unknown executionMode " + executionMode + ", expected "
+					+ EXECUTION_MODE_FORK + ", " + EXECUTION_MODE_IN_PROCESS + " or " + EXECUTION_MODE_DAEMON);
+		}
+
+		if (!ASSEMBLY_MERGE_ARCHIVER.equals(assemblyMerge) && !ASSEMBLY_MERGE_STREAM.equals(assemblyMerge)) {
+			throw new MojoFailureException("Unknown assemblyMerge " + assemblyMerge + ", expected "
+					+ ASSEMBLY_MERGE_ARCHIVER + " or " + ASSEMBLY_MERGE_STREAM);
+		}
+
+		if (compressionLevel < -1 || compressionLevel > 9 || intermediateCompressionLevel < -1
+				|| intermediateCompressionLevel > 9) {
+			throw new MojoFailureException("Invalid compressionLevel " + compressionLevel
+					+ " or intermediateCompressionLevel " + intermediateCompressionLevel + ", expected -1 to 9");
+		}
+
+		try {
+			JvmOptions.gcArgs(gc);
+			antLogLevel();
+			reproducibleTime = outputTime(outputTimestamp);
+		} catch (IllegalArgumentException e) {
+			throw new MojoFailureException(e.getMessage());
+		}
+		if (memoryBudget != null && !JvmOptions.AUTO.equals(memoryBudget) && JvmOptions.parseMemory(memoryBudget) <= 0) {
+			throw new MojoFailureException("Invalid memoryBudget " + memoryBudget + ", expected e.g. 8g or auto");
+		}
+
+		dependencyScanCache = DependencyScanCache.forBuild(reactorProjects);
+
+		report = new BuildReport();
+		report.set("project", mavenProject.getId());
+		report.set("executionMode", executionMode);
+		report.begin("prepare");
+
 		boolean mainIsJar = mavenProject.getPackaging().equals("jar");
 
 		File inJarFile = new File(outputDirectory, injar);
@@ -488,14 +907,12 @@ public class ProGuardMojo extends AbstractMojo {
 			outjar += "." + attachArtifactType;
 		}
 
+		UpToDateState upToDateState = upToDateCheck
+				? new UpToDateState(new File(outputDirectory, "proguard_uptodate.properties")) : null;
+
 		if ((outjar != null) && (!outjar.equals(injar))) {
 			sameArtifact = false;
 			outJarFile = (new File(outputDirectory, outjar)).getAbsoluteFile();
-			if (outJarFile.exists()) {
-				if (!deleteFileOrDirectory(outJarFile)) {
-					throw new MojoFailureException("Can't delete " + outJarFile);
-				}
-			}
 		} else {
 			sameArtifact = true;
 			outJarFile = inJarFile.getAbsoluteFile();
@@ -505,14 +922,19 @@ public class ProGuardMojo extends AbstractMojo {
 			} else {
 				baseFile = new File(outputDirectory, nameNoType(injar) + "_proguard_base.jar");
 			}
-			if (baseFile.exists()) {
-				if (!deleteFileOrDirectory(baseFile)) {
-					throw new MojoFailureException("Can't delete " + baseFile);
+			if (upToDateState != null && isLastRunOutput(upToDateState, inJarFile, baseFile)) {
+				// the injar wasn't rebuilt, the base is still the input
+				log.info("Reusing " + baseFile.getName() + ", " + inJarFile.getName() + " is the last ProGuard output");
+			} else {
+				if (baseFile.exists()) {
+					if (!deleteFileOrDirectory(baseFile)) {
+						throw new MojoFailureException("Can't delete " + baseFile);
+					}
 				}
-			}
-			if (inJarFile.exists()) {
-				if (!inJarFile.renameTo(baseFile)) {
-					throw new MojoFailureException("Can't rename " + inJarFile);
+				if (inJarFile.exists()) {
+					if (!inJarFile.renameTo(baseFile)) {
+						throw new MojoFailureException("Can't rename " + inJarFile);
+					}
 				}
 			}
 			inJarFile = baseFile;
@@ -520,7 +942,10 @@ public class ProGuardMojo extends AbstractMojo {
 
 		ArrayList<String> args = new ArrayList<String>();
 		ArrayList<File> libraryJars = new ArrayList<File>();
+		List<File> libraryInputs = new ArrayList<File>();
+		libraryStubs = stubLibraryJars ? new LibraryStubs(libraryStubDirectory, intermediateCompressionLevel) : null;
 
+		report.begin("dependencyScan");
 		if (log.isDebugEnabled()) {
 			@SuppressWarnings("unchecked")
 			List<Artifact> dependancy = mavenProject.getCompileArtifacts();
@@ -544,12 +969,14 @@ public class ProGuardMojo extends AbstractMojo {
 		}
 
 		Set<String> inPath = new HashSet<String>();
-		Map<Artifact, Inclusion> injars = new HashMap<Artifact, Inclusion>();
-		Map<Artifact, Inclusion> libraryjars = new HashMap<Artifact, Inclusion>();
+		// sorted, for the same arguments in every build
+		Map<Artifact, Inclusion> injars = new TreeMap<Artifact, Inclusion>();
+		Map<Artifact, Inclusion> libraryjars = new TreeMap<Artifact, Inclusion>();
 		boolean hasInclusionLibrary = false;
 		if (assembly != null && assembly.inclusions != null) {
+			Map<Inclusion, Set<Artifact>> inclusionDependencies = getDependencies(assembly.inclusions, mavenProject);
 			for (Inclusion inc : assembly.inclusions) {
-				for (Artifact artifact : getDependencies(inc, mavenProject)) {
+				for (Artifact artifact : inclusionDependencies.get(inc)) {
 					if (inc.library) {
 						if (!injars.containsKey(artifact)) {
 							libraryjars.put(artifact, inc);
@@ -588,12 +1015,7 @@ public class ProGuardMojo extends AbstractMojo {
 				File file = getClasspathElement(entry.getKey(), mavenProject);
 				hasInclusionLibrary = true;
 				inPath.add(file.toString());
-				if (putLibraryJarsInTempDir) {
-					libraryJars.add(file);
-				} else {
-					args.add("-libraryjars");
-					args.add(libFileToStringWithInLibsFilter(file));
-				}
+				libraryInputs.add(file);
 			}
 		}
 
@@ -648,12 +1070,7 @@ public class ProGuardMojo extends AbstractMojo {
 					args.add(fileToString(file) + dependencyInjarFilter);
 				} else {
 					log.debug("--- ADD libraryjars:" + artifact.getArtifactId());
-					if (putLibraryJarsInTempDir) {
-						libraryJars.add(file);
-					} else {
-						args.add("-libraryjars");
-						args.add(libFileToStringWithInLibsFilter(file));
-					}
+					libraryInputs.add(file);
 				}
 			}
 		}
@@ -683,61 +1100,34 @@ public class ProGuardMojo extends AbstractMojo {
 
 		if (libs != null) {
 			for (String lib : libs) {
-				if (putLibraryJarsInTempDir) {
-					libraryJars.add(new File(lib));
-				} else {
-					args.add("-libraryjars");
-					args.add(libFileToStringWithInLibsFilter(lib));
-				}
+				libraryInputs.add(new File(lib));
 			}
 		}
 
-		if (!libraryJars.isEmpty()) {
-			log.debug("Copy libraryJars to temporary directory");
-			log.debug("Temporary directory: " + tempLibraryjarsDir);
-			if (tempLibraryjarsDir.exists()) {
-				try {
-					FileUtils.deleteDirectory(tempLibraryjarsDir);
-				} catch (IOException ignored) {
-					throw new MojoFailureException("Deleting failed libraryJars directory", ignored);
-				}
-			}
-			tempLibraryjarsDir.mkdir();
-			if (!tempLibraryjarsDir.exists()) {
-				throw new MojoFailureException(
-						"Can't create temporary libraryJars directory: " + tempLibraryjarsDir.getAbsolutePath());
-			}
-			// Use this subdirectory for all libraries that are files, and not directories themselves
-			File commonDir = new File(tempLibraryjarsDir, "0");
-			commonDir.mkdir();
-
-			int directoryIndex = 1;
-			for (File libraryJar : libraryJars) {
-				try {
-					log.debug("Copying library: " + libraryJar);
-					if (libraryJar.isFile()) {
-						FileUtils.copyFileToDirectory(libraryJar, commonDir);
-					} else {
-						File subDir = new File(tempLibraryjarsDir, String.valueOf(directoryIndex));
-						FileUtils.copyDirectory(libraryJar, subDir);
-						args.add("-libraryjars");
-						args.add(libFileToStringWithInLibsFilter(subDir));
-					}
-				} catch (IOException e) {
-					throw new MojoFailureException("Can't copy to temporary libraryJars directory", e);
-				}
-				directoryIndex++;
-			}
-			args.add("-libraryjars");
-			args.add(libFileToStringWithInLibsFilter(commonDir));
+		if (classpathDeduplication) {
+			report.begin("classpathDeduplication");
+			libraryInputs = deduplicateLibraries(args, libraryInputs);
+		}
+		for (File library : libraryInputs) {
+			addLibraryJar(library, args, libraryJars);
+		}
+		if (libraryStubs != null && libraryStubs.created.get() + libraryStubs.reused.get() > 0) {
+			log.info("Using API stubs of " + (libraryStubs.created.get() + libraryStubs.reused.get())
+					+ " library jars, " + libraryStubs.created.get() + " created ("
+					+ FileUtils.byteCountToDisplaySize(libraryStubs.bytesIn.get()) + " stubbed to "
+					+ FileUtils.byteCountToDisplaySize(libraryStubs.bytesOut.get()) + ")");
 		}
 
+		int libraryArgsEnd = args.size();
+
+		report.begin("configuration");
 		File mappingFile = new File(outputDirectory, mappingFileName);
 		args.add("-printmapping");
 		args.add(fileToString(mappingFile.getAbsoluteFile()));
 
+		File seedFile = new File(outputDirectory, seedFileName).getAbsoluteFile();
 		args.add("-printseeds");
-		args.add(fileToString((new File(outputDirectory, seedFileName).getAbsoluteFile())));
+		args.add(fileToString(seedFile));
 
 		if (incremental && applyMappingFile == null) {
 			throw new MojoFailureException("applyMappingFile is required if incremental is true");
@@ -757,37 +1147,140 @@ public class ProGuardMojo extends AbstractMojo {
 		}
 
 
-		if(generateTemporaryConfigurationFile) {
-			log.info("building config file");
+		List<File> outputs = Arrays.asList(outJarFile, mappingFile.getAbsoluteFile(), seedFile);
+		List<File> programInputs = ProGuardArgs.files(args, mavenProject.getBasedir(), ProGuardArgs.INJARS);
+		List<VariantRun> variantRuns = planVariants(args);
 
-			StringBuilder stringBuilder = new StringBuilder();
-			for (String arg : args) {
-				if (arg.startsWith("-")) {
-					stringBuilder.append("\n");
-				} else {
-					stringBuilder.append(" ");
+		String upToDateKey = null;
+		List<File> upToDateInputs = null;
+		List<File> upToDateOutputs = null;
+		if (upToDateState != null) {
+			report.begin("upToDateCheck");
+			try {
+				upToDateKey = UpToDateState.configurationKey(args, getProguardJars(this), upToDateSettings(variantRuns));
+				upToDateInputs = upToDateInputs(args, libraryJars, variantRuns);
+				upToDateOutputs = new ArrayList<File>(outputs);
+				for (VariantRun run : variantRuns) {
+					Collections.addAll(upToDateOutputs, run.outJarFile, run.mappingFile, run.seedFile);
+				}
+				if (upToDateState.isUpToDate(upToDateKey, upToDateInputs, upToDateOutputs)) {
+					log.info("ProGuard outputs are up to date, skipping ProGuard");
+					report.set("upToDate", true);
+					attachOutputs(sameArtifact, outJarFile, variantRuns);
+					writeBuildReport();
+					return;
 				}
-				stringBuilder.append(arg);
+				upToDateState.invalidate();
+			} catch (IOException e) {
+				log.warn("Can't check whether the ProGuard outputs are up to date: " + e);
+				upToDateState = null;
+			}
+		}
+		if (outJarFile.exists()) {
+			if (!deleteFileOrDirectory(outJarFile)) {
+				throw new MojoFailureException("Can't delete " + outJarFile);
 			}
+		}
 
-			try (FileWriter writer = new FileWriter(temporaryConfigurationFile);) {
-				IOUtils.write(stringBuilder.toString(), writer);
+		report.begin("libraryStaging");
+		if (!libraryJars.isEmpty()) {
+			log.debug("Stage libraryJars in temporary directory: " + tempLibraryjarsDir);
+			LibraryStager.Result staged;
+			try {
+				LibraryStager stager = new LibraryStager(tempLibraryjarsDir,
+						LibraryStager.Strategy.parse(libraryStaging), libraryStagingThreads);
+				staged = stager.stage(libraryJars, reuseStagedLibraryJars);
+			} catch (IllegalArgumentException e) {
+				throw new MojoFailureException(e.getMessage());
 			} catch (IOException e) {
-				throw new MojoFailureException("cannot write to temporary configuration file " + temporaryConfigurationFile, e);
+				throw new MojoFailureException("Can't copy to temporary libraryJars directory", e);
 			}
+			if (staged.reused) {
+				log.info("Reusing " + libraryJars.size() + " staged libraries in " + tempLibraryjarsDir);
+			} else {
+				log.info("Staged " + libraryJars.size() + " libraries in " + staged.millis + " ms ("
+						+ FileUtils.byteCountToDisplaySize(staged.bytesCopied.get()) + " copied, "
+						+ FileUtils.byteCountToDisplaySize(staged.bytesLinked.get()) + " linked)");
+				if (staged.fallbacks.get() > 0) {
+					log.info(staged.fallbacks.get() + " library files could not be " + libraryStaging
+							+ "ed and were copied");
+				}
+			}
+			List<String> stagedArgs = new ArrayList<String>();
+			for (File subDir : staged.directories) {
+				stagedArgs.add("-libraryjars");
+				stagedArgs.add(libFileToStringWithInLibsFilter(subDir));
+			}
+			stagedArgs.add("-libraryjars");
+			stagedArgs.add(libFileToStringWithInLibsFilter(staged.commonDir));
+			// where the libraries were added, ahead of those of the options
+			args.addAll(libraryArgsEnd, stagedArgs);
+		}
+
+		resolvedMaxMemory = resolveMaxMemory(args);
+		if (warningsReport) {
+			warningsReportInputs = ProGuardArgs.files(args, mavenProject.getBasedir(), ProGuardArgs.INJARS,
+					ProGuardArgs.LIBRARYJARS);
+		}
+		exposeConfigurationHash(args);
+		startVariants(args, variantRuns);
+
+		// whether the outjar is only read again, by the archiver of the assembly or to make it reproducible
+		boolean rewritten = reproducible || (assembly != null && hasInclusionLibrary
+				&& (!ASSEMBLY_MERGE_STREAM.equals(assemblyMerge) || archive.getManifestFile() != null
+				|| archive.isIndex()));
+		if ((rewritten ? intermediateCompressionLevel : compressionLevel) == Deflater.NO_COMPRESSION) {
+			args = new ArrayList<String>(args);
+			args.add("-dontcompress");
+		}
 
-			args = new ArrayList<String>();
-			args.add("-include");
-			args.add(fileToString(temporaryConfigurationFile));
+		report.begin("buildCache");
+		ProGuardBuildCache cache = buildCache ? new ProGuardBuildCache(buildCacheDirectory) : null;
+		String cacheKey = null;
+		boolean restored = false;
+		if (cache != null) {
+			try {
+				cacheKey = cache.key(args, getProguardJars(this), mavenProject.getBasedir());
+				restored = cache.restore(cacheKey, outputs);
+			} catch (IOException e) {
+				log.warn("Can't use build cache " + buildCacheDirectory + ": " + e);
+				cache = null;
+			}
 		}
 
-		log.info("execute ProGuard " + args.toString());
-		proguardMain(getProguardJars(this), args, this);
+		if (restored) {
+			log.info("ProGuard outputs restored from build cache " + cacheKey);
+		} else {
+			if (!sharding || !runShards(args, outJarFile, mappingFile.getAbsoluteFile(), seedFile)) {
+				if (generateTemporaryConfigurationFile) {
+					report.begin("configuration");
+					args = writeTemporaryConfigurationFile(args, temporaryConfigurationFile);
+				}
+
+				log.info("execute ProGuard " + args.toString());
+				runProGuard(args, report, null);
+			}
 
-		if (!libraryJars.isEmpty()) {
+			if (cache != null) {
+				report.begin("buildCache");
+				try {
+					cache.store(cacheKey, outputs);
+				} catch (IOException e) {
+					log.warn("Can't store ProGuard outputs in build cache " + buildCacheDirectory + ": " + e);
+				}
+			}
+		}
+
+		if (!variantRuns.isEmpty()) {
+			report.begin("variants");
+			awaitVariants(variantRuns);
+		}
+
+		if (!libraryJars.isEmpty() && !reuseStagedLibraryJars) {
 			deleteFileOrDirectory(tempLibraryjarsDir);
 		}
 
+		report.begin("assembly");
 		if ((assembly != null) && (hasInclusionLibrary)) {
 
 			log.info("creating assembly");
@@ -803,78 +1296,45 @@ public class ProGuardMojo extends AbstractMojo {
 				throw new MojoFailureException("Can't rename " + outJarFile);
 			}
 
-			MavenArchiver archiver = new MavenArchiver();
-			archiver.setArchiver(jarArchiver);
-			archiver.setOutputFile(archiverFile);
-			archive.setAddMavenDescriptor(addMavenDescriptor);
-
-			try {
-				jarArchiver.addArchivedFileSet(baseFile);
-				for (Entry<Artifact, Inclusion> entry : libraryjars.entrySet()) {
-					File file;
-					file = getClasspathElement(entry.getKey(), mavenProject);
-					if (file.isDirectory()) {
-						getLog().info("merge project: " + entry.getKey() + " " + file);
-						jarArchiver.addDirectory(file);
-					} else {
-						getLog().info("merge artifact: " + entry.getKey());
-						
-						// Respect filter if set
-						String filter = entry.getValue().filter;
-						if(filter == null) {
-							jarArchiver.addArchivedFileSet(file);
-						} else {
-						    
-						    // Filter elements must be separated int two lists
-						    List<String> includes = new ArrayList<String>();
-						    List<String> excludes = new ArrayList<String>();
-
-						    // Elements starting with ! should be excluded while others should be included
-						    for(String element : filter.split(",")) {
-							if(element.startsWith("!")) {
-							    excludes.add(element.substring(1));
-							}else {
-							    includes.add(element);
-							}
-						    }
-
-						    // Null is important on empty includes otherwise nothing gets included
-						    jarArchiver.addArchivedFileSet(file,
-							    (includes.isEmpty() ? null : includes.toArray(new String[0])),
-							    (excludes.isEmpty() ? null : excludes.toArray(new String[0])));
-						}
-					}
-				}
-
-				archiver.createArchive(mavenProject, archive);
-
-			} catch (Exception e) {
-				throw new MojoExecutionException("Unable to create jar", e);
+			if (!ASSEMBLY_MERGE_STREAM.equals(assemblyMerge) || !mergeAssembly(baseFile, archiverFile, libraryjars)) {
+				createAssembly(baseFile, archiverFile, libraryjars);
 			}
+		}
 
+		if (reproducible) {
+			report.begin("reproducible");
+			normalizeJar(outJarFile);
+			for (VariantRun run : variantRuns) {
+				normalizeJar(run.outJarFile);
+			}
 		}
 
+		report.begin("mappingMerge");
 		if (incremental) {
 			log.info("Merging mapping file into " + applyMappingFile);
-
 			try {
-				FileInputStream mappingFileIn = new FileInputStream(mappingFile);
-				try {
-					applyMappingFile.getParentFile().mkdirs();
-					FileOutputStream mappingFileOut = new FileOutputStream(applyMappingFile, true);
-					try {
-						IOUtils.copy(mappingFileIn, mappingFileOut);
-					} finally {
-						mappingFileOut.close();
-					}
-				} finally {
-					mappingFileIn.close();
-				}
+				MappingStore.Result merged = new MappingStore(applyMappingFile.getAbsoluteFile())
+						.merge(mappingFile.getAbsoluteFile(), MappingStore.classNames(programInputs));
+				log.info("Mapping file " + applyMappingFile.getName() + ": " + merged);
 			} catch (IOException e) {
 				throw new MojoExecutionException("Unable to merge mapping file", e);
 			}
 		}
 
+		if (upToDateState != null) {
+			try {
+				upToDateState.save(upToDateKey, upToDateInputs, upToDateOutputs);
+			} catch (IOException e) {
+				log.warn("Can't record the inputs and outputs of this run: " + e);
+			}
+		}
+
+		attachOutputs(sameArtifact, outJarFile, variantRuns);
+		writeBuildReport();
+	}
+
+	private void attachOutputs(boolean sameArtifact, File outJarFile, List<VariantRun> variantRuns) {
+		report.begin("attach");
 		if (attach) {
 			if (!sameArtifact) {
 				final String classifier;
@@ -887,8 +1347,18 @@ public class ProGuardMojo extends AbstractMojo {
 				projectHelper.attachArtifact(mavenProject, attachArtifactType, classifier, outJarFile);
 			}
 
-			final String mainClassifier = useArtifactClassifier() ? attachArtifactClassifier : null;
-			final File buildOutput = new File(mavenProject.getBuild().getDirectory());
+			for (VariantRun run : variantRuns) {
+				projectHelper.attachArtifact(mavenProject, attachArtifactType, run.variant.classifier, run.outJarFile);
+				if (attachMap) {
+					attachTextFile(run.mappingFile, run.variant.classifier, "map");
+				}
+				if (attachSeed) {
+					attachTextFile(run.seedFile, run.variant.classifier, "seed");
+				}
+			}
+
+			final String mainClassifier = useArtifactClassifier() ? attachArtifactClassifier : null;
+			final File buildOutput = new File(mavenProject.getBuild().getDirectory());
 			if (attachMap) {
 				attachTextFile(new File(buildOutput, mappingFileName), mainClassifier, "map");
 			}
@@ -898,6 +1368,77 @@ public class ProGuardMojo extends AbstractMojo {
 		}
 	}
 
+	private void writeWarningsReport(ProGuardOutputParser parser, File reportFile) {
+		if (parser.getTotal() == 0) {
+			log.debug("ProGuard reported no notes or warnings");
+		} else {
+			log.info("ProGuard notes and warnings: " + parser.kinds() + ", see " + reportFile);
+		}
+		try {
+			parser.write(reportFile, warningsReportInputs);
+		} catch (IOException e) {
+			log.warn("Can't write ProGuard warnings report " + reportFile + ": " + e);
+		}
+	}
+
+	private void writeBuildReport() {
+		if (buildReport) {
+			File reportFile = new File(outputDirectory, "proguard_report.json");
+			try {
+				report.write(reportFile, new File(outputDirectory, "proguard_report.csv"));
+				log.info("ProGuard build report written to " + reportFile);
+			} catch (IOException e) {
+				log.warn("Can't write ProGuard build report " + reportFile + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Sets the {@code proguard.configurationHash} project property to the hash of the effective configuration, for
+	 * other caches to use. With {@link #generateTemporaryConfigurationFile} it is also written to a {@code .sha256} file
+	 * next to {@link #temporaryConfigurationFile}.
+	 */
+	private void exposeConfigurationHash(List<String> args) {
+		File baseDir = mavenProject.getBasedir();
+		try {
+			String text = ConfigurationFile.text(args, temporaryConfigurationFile.getAbsoluteFile().getParentFile(),
+					baseDir);
+			String hash = ConfigurationFile.hash(text, ProGuardArgs.files(args, baseDir, ProGuardArgs.INCLUDE));
+			mavenProject.getProperties().setProperty("proguard.configurationHash", hash);
+			report.set("configurationHash", hash);
+			log.debug("ProGuard configuration hash " + hash);
+			if (generateTemporaryConfigurationFile) {
+				ConfigurationFile.writeIfChanged(new File(temporaryConfigurationFile.getPath() + ".sha256"), hash + "\n");
+			}
+		} catch (IOException e) {
+			log.warn("Can't hash the ProGuard configuration: " + e);
+		}
+	}
+
+	/**
+	 * Writes {@code args} to {@link #temporaryConfigurationFile}, unless it has them already, and returns the arguments
+	 * that include it.
+	 */
+	private ArrayList<String> writeTemporaryConfigurationFile(List<String> args, File temporaryConfigurationFile)
+			throws MojoFailureException {
+		log.info("building config file");
+
+		String text = ConfigurationFile.text(args, temporaryConfigurationFile.getAbsoluteFile().getParentFile(),
+				mavenProject.getBasedir());
+		try {
+			if (!ConfigurationFile.writeIfChanged(temporaryConfigurationFile, text)) {
+				log.debug("Temporary configuration file " + temporaryConfigurationFile + " is unchanged");
+			}
+		} catch (IOException e) {
+			throw new MojoFailureException("cannot write to temporary configuration file " + temporaryConfigurationFile, e);
+		}
+
+		ArrayList<String> includeArgs = new ArrayList<String>();
+		includeArgs.add("-include");
+		includeArgs.add(fileToString(temporaryConfigurationFile));
+		return includeArgs;
+	}
+
 	private void attachTextFile(File theFile, String mainClassifier, String suffix) {
 		final String classifier = (null == mainClassifier ? "" : mainClassifier + "-") + suffix;
 		log.info("Attempting to attach " + suffix + " artifact");
@@ -1029,8 +1570,693 @@ public class ProGuardMojo extends AbstractMojo {
 		return Collections.singletonList(new File(proguardJar));
 	}
 
-	private void proguardMain(Collection<File> proguardJars, List<String> argsList, ProGuardMojo mojo)
+	/**
+	 * A ProGuard run of one of the {@link #variants}.
+	 */
+	private static final class VariantRun {
+		final Variant variant;
+		final File outJarFile;
+		final File mappingFile;
+		final File seedFile;
+		Future<Long> result;
+
+		VariantRun(Variant variant, File outJarFile, File mappingFile, File seedFile) {
+			this.variant = variant;
+			this.outJarFile = outJarFile;
+			this.mappingFile = mappingFile;
+			this.seedFile = seedFile;
+		}
+	}
+
+	/**
+	 * Returns the ProGuard runs of the {@link #variants}, for the arguments of the main run.
+	 */
+	private List<VariantRun> planVariants(List<String> args) throws MojoFailureException {
+		if (variants == null || variants.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if (!args.contains("-outjars")) {
+			log.warn("No injars, skipping the ProGuard variants");
+			return Collections.emptyList();
+		}
+		Set<String> classifiers = new HashSet<String>();
+		List<VariantRun> runs = new ArrayList<VariantRun>();
+		for (Variant variant : variants) {
+			if (variant.classifier == null || variant.classifier.isEmpty()) {
+				throw new MojoFailureException("Every ProGuard variant needs a classifier");
+			}
+			if (!classifiers.add(variant.classifier) || variant.classifier.equals(attachArtifactClassifier)) {
+				throw new MojoFailureException("Duplicate ProGuard variant classifier " + variant.classifier);
+			}
+			File outJarFile = new File(outputDirectory,
+					nameNoType(injar) + "-" + variant.classifier + "." + attachArtifactType).getAbsoluteFile();
+			runs.add(new VariantRun(variant, outJarFile,
+					new File(outputDirectory, classified(mappingFileName, variant.classifier)).getAbsoluteFile(),
+					new File(outputDirectory, classified(seedFileName, variant.classifier)).getAbsoluteFile()));
+		}
+		return runs;
+	}
+
+	/**
+	 * Starts the ProGuard {@code runs} of the {@link #variants} in the background, with the arguments of the main run.
+	 */
+	private void startVariants(List<String> args, List<VariantRun> runs) {
+		if (runs.isEmpty()) {
+			return;
+		}
+		int threads = Math.min(runs.size(),
+				variantThreads > 0 ? variantThreads : Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "proguard-variant");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			for (final VariantRun run : runs) {
+				final List<String> variantArgs = variantArgs(args, run);
+				final File configurationFile = new File(temporaryConfigurationFile.getParentFile(),
+						classified(temporaryConfigurationFile.getName(), run.variant.classifier));
+				run.result = executor.submit(new Callable<Long>() {
+					public Long call() throws Exception {
+						long start = System.currentTimeMillis();
+						List<String> runArgs = generateTemporaryConfigurationFile
+								? writeTemporaryConfigurationFile(variantArgs, configurationFile) : variantArgs;
+						log.info("execute ProGuard variant " + run.variant.classifier + " " + runArgs);
+						runProGuard(runArgs, new BuildReport(), run.variant.classifier);
+						return System.currentTimeMillis() - start;
+					}
+				});
+			}
+		} finally {
+			// lets the queued variants finish, then ends the threads
+			executor.shutdown();
+		}
+	}
+
+	private List<String> variantArgs(List<String> args, VariantRun run) {
+		List<String> variantArgs = new ArrayList<String>(args);
+		for (int i = 0; i < variantArgs.size() - 1; i++) {
+			String option = variantArgs.get(i);
+			if (option.equals("-outjars")) {
+				String filter = ProGuardArgs.filter(variantArgs.get(i + 1));
+				variantArgs.set(i + 1, fileToString(run.outJarFile) + (filter == null ? "" : createFilterString(filter)));
+			} else if (option.equals("-printmapping")) {
+				variantArgs.set(i + 1, fileToString(run.mappingFile));
+			} else if (option.equals("-printseeds")) {
+				variantArgs.set(i + 1, fileToString(run.seedFile));
+			}
+		}
+		if (run.variant.proguardInclude != null) {
+			variantArgs.add("-include");
+			variantArgs.add(fileToString(run.variant.proguardInclude));
+		}
+		if (run.variant.options != null) {
+			Collections.addAll(variantArgs, run.variant.options);
+		}
+		// the outjars of variants are only written again to make them reproducible
+		if ((reproducible ? intermediateCompressionLevel : compressionLevel) == Deflater.NO_COMPRESSION) {
+			variantArgs.add("-dontcompress");
+		}
+		return variantArgs;
+	}
+
+	private void awaitVariants(List<VariantRun> runs) throws MojoExecutionException {
+		for (VariantRun run : runs) {
+			try {
+				long millis = run.result.get();
+				log.info("ProGuard variant " + run.variant.classifier + " done in " + millis + " ms");
+				report.set("variant." + run.variant.classifier + ".millis", millis);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof MojoExecutionException) {
+					throw (MojoExecutionException) e.getCause();
+				}
+				throw new MojoExecutionException("ProGuard variant " + run.variant.classifier + " failed: "
+						+ e.getCause(), e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("Interrupted while waiting for ProGuard variants", e);
+			}
+		}
+	}
+
+	/**
+	 * Runs ProGuard on the shards of the injars in {@code args}, see {@link #sharding}, and merges their outputs into
+	 * {@code outJarFile}, {@code mappingFile} and {@code seedFile}. Returns {@code false} if the injars can't be
+	 * sharded, without running ProGuard.
+	 */
+	private boolean runShards(List<String> args, File outJarFile, File mappingFile, File seedFile)
+			throws MojoExecutionException {
+		report.begin("sharding");
+		File baseDir = mavenProject.getBasedir();
+		List<List<Integer>> shards;
+		try {
+			String reason = InjarShards.unsupportedReason(args, baseDir);
+			if (reason == null && !ProGuardArgs.files(args, baseDir, ProGuardArgs.OUTJARS).get(0).getName()
+					.matches(".*\\.(jar|aar|war|ear|zip|apk|jmod)")) {
+				reason = "the outjar is a directory";
+			}
+			if (reason != null) {
+				log.info("Not sharding ProGuard, " + reason);
+				return false;
+			}
+			shards = InjarShards.shards(ProGuardArgs.files(args, baseDir, ProGuardArgs.INJARS));
+		} catch (IOException e) {
+			log.warn("Can't split the injars into shards: " + e);
+			return false;
+		}
+		if (shards.size() < 2) {
+			log.info("Not sharding ProGuard, the injars depend on each other");
+			return false;
+		}
+		log.info("Running ProGuard on " + shards.size() + " shards of independent injars");
+		report.set("shards", shards.size());
+
+		List<File> shardOutJars = new ArrayList<File>();
+		List<File> shardMappings = new ArrayList<File>();
+		List<File> shardSeeds = new ArrayList<File>();
+		List<Future<Long>> results = new ArrayList<Future<Long>>();
+		int threads = Math.min(shards.size(),
+				shardThreads > 0 ? shardThreads : Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "proguard-shard");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			for (int i = 0; i < shards.size(); i++) {
+				final String classifier = "shard" + (i + 1);
+				File shardOutJar = classified(outJarFile.getAbsoluteFile(), classifier);
+				File shardMapping = classified(mappingFile, classifier);
+				File shardSeed = classified(seedFile, classifier);
+				shardOutJars.add(shardOutJar);
+				shardMappings.add(shardMapping);
+				shardSeeds.add(shardSeed);
+				final List<String> shardArgs = shardArgs(args, shards.get(i), shardOutJar, shardMapping, shardSeed);
+				final File configurationFile = classified(temporaryConfigurationFile, classifier);
+				results.add(executor.submit(new Callable<Long>() {
+					public Long call() throws Exception {
+						long start = System.currentTimeMillis();
+						List<String> runArgs = generateTemporaryConfigurationFile
+								? writeTemporaryConfigurationFile(shardArgs, configurationFile) : shardArgs;
+						log.info("execute ProGuard " + classifier + " " + runArgs);
+						runProGuard(runArgs, new BuildReport(), classifier);
+						return System.currentTimeMillis() - start;
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					long millis = results.get(i).get();
+					log.info("ProGuard shard" + (i + 1) + " done in " + millis + " ms");
+					report.set("shard" + (i + 1) + ".millis", millis);
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof MojoExecutionException) {
+						throw (MojoExecutionException) e.getCause();
+					}
+					throw new MojoExecutionException("ProGuard shard" + (i + 1) + " failed: " + e.getCause(),
+							e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException("Interrupted while waiting for ProGuard shards", e);
+				}
+			}
+		} finally {
+			// an interrupted shard destroys its forked ProGuard JVM, shards running without one are waited for
+			executor.shutdownNow();
+			try {
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					log.info("Waiting for the remaining ProGuard shards to stop");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		report.begin("shardMerge");
+		try {
+			mergeJars(shardOutJars, outJarFile);
+			concatenate(shardMappings, mappingFile);
+			concatenate(shardSeeds, seedFile);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to merge the outputs of the ProGuard shards", e);
+		}
+		for (int i = 0; i < shards.size(); i++) {
+			shardOutJars.get(i).delete();
+			shardMappings.get(i).delete();
+			shardSeeds.get(i).delete();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns {@code args} with only the injars of {@code shard}, by their index, and with the outputs of the shard.
+	 */
+	private List<String> shardArgs(List<String> args, List<Integer> shard, File outJarFile, File mappingFile,
+			File seedFile) {
+		List<String> shardArgs = new ArrayList<String>();
+		int injar = 0;
+		for (int i = 0; i < args.size(); i++) {
+			String option = args.get(i);
+			if (i + 1 < args.size() && option.equals(ProGuardArgs.INJARS)) {
+				if (shard.contains(injar++)) {
+					shardArgs.add(option);
+					shardArgs.add(args.get(i + 1));
+				}
+				i++;
+				continue;
+			}
+			List<String> words = ProGuardArgs.words(option);
+			if (words.size() > 1) {
+				// a whole option line, like <option>-printmapping mapping.txt</option>
+				List<String> shardWords = shardOutputs(words, outJarFile, mappingFile, seedFile);
+				shardArgs.add(shardWords.equals(words) ? option : String.join(" ", shardWords));
+				continue;
+			}
+			shardArgs.add(option);
+			if (i + 1 < args.size() && isShardOutput(option, args.get(i + 1))) {
+				shardArgs.add(shardOutput(option, args.get(++i), outJarFile, mappingFile, seedFile));
+			}
+		}
+		return shardArgs;
+	}
+
+	/**
+	 * Returns {@code words} with the files of their output options replaced by the outputs of a shard.
+	 */
+	private List<String> shardOutputs(List<String> words, File outJarFile, File mappingFile, File seedFile) {
+		List<String> shardWords = new ArrayList<String>();
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			shardWords.add(word);
+			if (i + 1 < words.size() && isShardOutput(word, words.get(i + 1))) {
+				shardWords.add(shardOutput(word, words.get(++i), outJarFile, mappingFile, seedFile));
+			}
+		}
+		return shardWords;
+	}
+
+	private static boolean isShardOutput(String option, String next) {
+		return (option.equals(ProGuardArgs.OUTJARS) || option.equals("-printmapping") || option.equals("-printseeds"))
+				&& !next.startsWith("-");
+	}
+
+	private String shardOutput(String option, String value, File outJarFile, File mappingFile, File seedFile) {
+		if (option.equals(ProGuardArgs.OUTJARS)) {
+			String filter = ProGuardArgs.filter(value);
+			return fileToString(outJarFile) + (filter == null ? "" : createFilterString(filter));
+		}
+		return fileToString(option.equals("-printmapping") ? mappingFile : seedFile);
+	}
+
+	/**
+	 * Writes the entries of {@code jars} to {@code output}, the first entry of any name winning.
+	 */
+	private void mergeJars(List<File> jars, File output) throws IOException {
+		try (ZipMerger merger = new ZipMerger(output, compressionLevel)) {
+			for (File jar : jars) {
+				if (jar.isFile()) {
+					merger.addZip(jar, name -> true);
+				}
+			}
+			return;
+		} catch (ZipMerger.UnsupportedZipException e) {
+			log.debug(e.getMessage() + ", merging the shards with inflating and deflating");
+		}
+		Set<String> names = new HashSet<String>();
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(output))) {
+			out.setLevel(compressionLevel);
+			for (File jar : jars) {
+				if (!jar.isFile()) {
+					continue;
+				}
+				try (ZipInputStream in = new ZipInputStream(new FileInputStream(jar))) {
+					for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+						if (names.add(entry.getName())) {
+							ZipEntry copy = new ZipEntry(entry.getName());
+							copy.setTime(entry.getTime());
+							out.putNextEntry(copy);
+							IOUtils.copy(in, out);
+							out.closeEntry();
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static void concatenate(List<File> files, File output) throws IOException {
+		try (OutputStream out = new FileOutputStream(output)) {
+			for (File file : files) {
+				if (file.isFile()) {
+					Files.copy(file.toPath(), out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns {@code file} with {@code -<classifier>} added to its name, or {@code file} if there is no classifier.
+	 */
+	private static File classified(File file, String classifier) {
+		if (file == null || classifier == null) {
+			return file;
+		}
+		return new File(file.getParentFile(), classified(file.getName(), classifier));
+	}
+
+	/**
+	 * Adds {@code -<classifier>} to {@code fileName}, before its extension.
+	 */
+	private static String classified(String fileName, String classifier) {
+		int extStart = fileName.lastIndexOf('.');
+		if (extStart == -1) {
+			return fileName + "-" + classifier;
+		}
+		return fileName.substring(0, extStart) + "-" + classifier + fileName.substring(extStart);
+	}
+
+	/**
+	 * Returns whether {@code inJarFile} is still the output of the last run, which read {@code baseFile}, as when the
+	 * injar wasn't rebuilt since.
+	 */
+	private boolean isLastRunOutput(UpToDateState upToDateState, File inJarFile, File baseFile) {
+		try {
+			return baseFile.exists() && upToDateState.isRecordedOutput(inJarFile.getAbsoluteFile())
+					&& upToDateState.isRecordedInput(baseFile.getAbsoluteFile());
+		} catch (IOException e) {
+			log.warn("Can't compare " + inJarFile + " with the last ProGuard output: " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the files the outputs are made of for {@link #upToDateCheck}: those in {@code args}, the libraries to
+	 * stage and the configuration of the variants and the assembly.
+	 */
+	private List<File> upToDateInputs(List<String> args, List<File> libraryJars, List<VariantRun> variantRuns) {
+		Set<File> files = new LinkedHashSet<File>(ProGuardArgs.files(args, mavenProject.getBasedir(),
+				ProGuardArgs.INJARS, ProGuardArgs.LIBRARYJARS, ProGuardArgs.INCLUDE, ProGuardArgs.APPLYMAPPING));
+		files.addAll(libraryJars);
+		for (VariantRun run : variantRuns) {
+			if (run.variant.proguardInclude != null) {
+				files.add(run.variant.proguardInclude);
+			}
+		}
+		if (assembly != null && archive.getManifestFile() != null) {
+			files.add(archive.getManifestFile());
+		}
+		Set<File> inputs = new LinkedHashSet<File>();
+		for (File file : files) {
+			if (file.exists()) {
+				inputs.add(file.getAbsoluteFile());
+			}
+		}
+		return new ArrayList<File>(inputs);
+	}
+
+	/**
+	 * Returns the settings besides the ProGuard arguments that shape the outputs, for {@link #upToDateCheck}.
+	 */
+	private String upToDateSettings(List<VariantRun> variantRuns) {
+		StringBuilder settings = new StringBuilder();
+		settings.append("incremental=").append(incremental).append('\n');
+		settings.append("sharding=").append(sharding).append('\n');
+		settings.append("compression=").append(compressionLevel).append(' ').append(intermediateCompressionLevel)
+				.append('\n');
+		if (reproducible) {
+			settings.append("reproducible=").append(reproducibleTime).append('\n');
+		}
+		for (VariantRun run : variantRuns) {
+			settings.append("variant=").append(run.variant.classifier).append(' ').append(run.variant.proguardInclude)
+					.append(' ').append(run.variant.options == null ? "" : Arrays.toString(run.variant.options))
+					.append('\n');
+		}
+		if (assembly != null) {
+			settings.append("assemblyMerge=").append(assemblyMerge).append('\n');
+			if (assembly.inclusions != null) {
+				for (Inclusion inclusion : assembly.inclusions) {
+					settings.append("inclusion=").append(inclusion).append(' ').append(inclusion.library).append(' ')
+							.append(inclusion.filter).append('\n');
+				}
+			}
+			@SuppressWarnings("unchecked")
+			Map<String, String> manifestEntries = archive.getManifestEntries();
+			settings.append("manifest=").append(new TreeMap<String, String>(manifestEntries))
+					.append(' ').append(archive.getManifestFile()).append(' ').append(archive.isIndex()).append('\n');
+		}
+		return settings.toString();
+	}
+
+	/**
+	 * Returns the max memory of the ProGuard process, estimating it from {@code args} for {@code maxMemory=auto}.
+	 * Workers are shared by executions with the same max memory, so for them the estimate is rounded up more coarsely.
+	 */
+	private String resolveMaxMemory(List<String> args) {
+		if (!JvmOptions.AUTO.equals(maxMemory)) {
+			return maxMemory;
+		}
+		try {
+			String estimate = JvmOptions.estimateMaxMemory(args, mavenProject.getBasedir(),
+					EXECUTION_MODE_DAEMON.equals(executionMode));
+			log.info("Estimated ProGuard max memory: " + estimate);
+			report.set("maxMemory", estimate);
+			return estimate;
+		} catch (IOException e) {
+			log.warn("Can't estimate ProGuard max memory, using the JVM default: " + e);
+			return null;
+		}
+	}
+
+	private List<String> getJvmArgs() {
+		List<String> result = new ArrayList<String>(JvmOptions.gcArgs(gc));
+		if (jvmArgs != null) {
+			result.addAll(jvmArgs);
+		}
+		return result;
+	}
+
+	/**
+	 * Runs ProGuard for the main outputs, or for those of the variant with {@code classifier}.
+	 */
+	private void runProGuard(List<String> args, BuildReport report, String classifier) throws MojoExecutionException {
+		if (maxProcesses <= 0 && memoryBudget == null) {
+			runAdmittedProGuard(args, report, classifier);
+			return;
+		}
+		report.begin("admission");
+		ProcessAdmission.Permit permit = admit();
+		try {
+			report.set("admissionWaitMillis", permit.getWaitMillis());
+			runAdmittedProGuard(args, report, classifier);
+		} finally {
+			try {
+				permit.close();
+			} catch (IOException e) {
+				log.warn("Can't release the ProGuard process slot: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the {@link ProcessAdmission} of a ProGuard run within {@link #maxProcesses} and {@link #memoryBudget}.
+	 */
+	private ProcessAdmission.Permit admit() throws MojoExecutionException {
+		long budget = 0;
+		if (JvmOptions.AUTO.equals(memoryBudget)) {
+			budget = Math.max(0, JvmOptions.physicalMemory() / 4 * 3);
+		} else if (memoryBudget != null) {
+			budget = JvmOptions.parseMemory(memoryBudget);
+		}
+		long memory = 0;
+		if (!EXECUTION_MODE_IN_PROCESS.equals(executionMode)) {
+			// without -Xmx the JVM takes a quarter of the physical memory
+			memory = resolvedMaxMemory != null ? JvmOptions.parseMemory(resolvedMaxMemory)
+					: Math.max(0, JvmOptions.physicalMemory() / 4);
+		}
+		int runningBefore = ProcessAdmission.SHARED.getRunning();
+		ProcessAdmission.Permit permit;
+		try {
+			permit = ProcessAdmission.SHARED.acquire(maxProcesses, budget, memory,
+					maxProcesses > 0 ? processLockDirectory : null);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Can't acquire a ProGuard process slot in " + processLockDirectory, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for a ProGuard process slot", e);
+		}
+		if (permit.getWaitMillis() >= 1000) {
+			log.info("Waited " + permit.getWaitMillis() + " ms to run ProGuard, " + runningBefore
+					+ " other runs of this build were in progress");
+		} else {
+			log.debug("Waited " + permit.getWaitMillis() + " ms to run ProGuard");
+		}
+		return permit;
+	}
+
+	private void runAdmittedProGuard(List<String> args, BuildReport report, String classifier)
 			throws MojoExecutionException {
+		ProGuardOutputParser parser = warningsReport ? new ProGuardOutputParser() : null;
+		try {
+			runAdmittedProGuard(args, report, classified(proguardOutputFile, classifier), parser);
+		} finally {
+			if (parser != null) {
+				writeWarningsReport(parser, classified(new File(outputDirectory, "proguard_warnings.json"), classifier));
+			}
+		}
+	}
+
+	private void runAdmittedProGuard(List<String> args, BuildReport report, File outputFile,
+			ProGuardOutputParser parser) throws MojoExecutionException {
+		List<File> proguardJars = getProguardJars(this);
+		report.end();
+		if (!EXECUTION_MODE_FORK.equals(executionMode)) {
+			long start = System.currentTimeMillis();
+			if (!DEFAULT_PROGUARD_MAIN_CLASS.equals(proguardMainClass)) {
+				log.warn("executionMode " + executionMode + " only supports main class " + DEFAULT_PROGUARD_MAIN_CLASS
+						+ ", forking " + proguardMainClass);
+			} else if (EXECUTION_MODE_IN_PROCESS.equals(executionMode)) {
+				proguardInProcess(proguardJars, args, report, outputFile, parser);
+				report.add("proguard", System.currentTimeMillis() - start);
+				return;
+			} else if (proguardInDaemon(proguardJars, args, outputFile, parser)) {
+				report.add("proguard", System.currentTimeMillis() - start);
+				return;
+			} else {
+				report.add("daemon", System.currentTimeMillis() - start);
+			}
+		}
+		proguardMain(proguardJars, args, this, report, outputFile, parser);
+	}
+
+	/**
+	 * Runs ProGuard in a worker process. Returns {@code false} if the worker could not be used, in which case ProGuard
+	 * still has to run.
+	 */
+	private boolean proguardInDaemon(List<File> proguardJars, List<String> args, File outputFile,
+			final ProGuardOutputParser parser) throws MojoExecutionException {
+		log.info("proguard jar: " + proguardJars + " (daemon)");
+		MavenloggingBinder binder = bindToMavenLogging ? newMavenloggingBinder(outputFile) : null;
+		int result;
+		try {
+			ProGuardWorkerClient client = new ProGuardWorkerClient(proguardJars, getAllPluginArtifactDependencies(this),
+					resolvedMaxMemory, getJvmArgs(), daemonIdleTimeout);
+			result = client.run(args, mavenProject.getBasedir(), proguardOutput(binder, parser));
+		} catch (IOException e) {
+			log.warn("ProGuard worker failed, forking ProGuard instead: " + e);
+			return false;
+		} finally {
+			closeMavenloggingBinder(binder, outputFile);
+		}
+		if (result != 0) {
+			throw new MojoExecutionException("Obfuscation failed (result=" + result + ")");
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the output for ProGuard runs without Ant, which passes the lines of ProGuard on like the Ant logger of a
+	 * forked run does.
+	 */
+	private ProGuardWorkerClient.Output proguardOutput(final MavenloggingBinder binder,
+			final ProGuardOutputParser parser) {
+		if (binder != null) {
+			binder.setMessageOutputLevel(silent ? Project.MSG_ERR : antLogLevel());
+		}
+		return new ProGuardWorkerClient.Output() {
+			@Override
+			public void out(String line) {
+				if (parser != null) {
+					parser.line(line);
+				}
+				if (binder != null) {
+					binder.log(line, Project.MSG_INFO);
+				} else if (!silent) {
+					System.out.println(line);
+				}
+			}
+
+			@Override
+			public void err(String line) {
+				if (parser != null) {
+					parser.line(line);
+				}
+				if (binder != null) {
+					binder.log(line, Project.MSG_ERR);
+				} else {
+					System.err.println(line);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the Ant message output level of {@link #mavenLoggingLevel}.
+	 */
+	private int antLogLevel() {
+		if (mavenLoggingLevel == null) {
+			return log.isDebugEnabled() ? Project.MSG_DEBUG : Project.MSG_INFO;
+		}
+		switch (mavenLoggingLevel) {
+		case "error":
+			return Project.MSG_ERR;
+		case "warn":
+			return Project.MSG_WARN;
+		case "info":
+			return Project.MSG_INFO;
+		case "debug":
+			return Project.MSG_DEBUG;
+		default:
+			throw new IllegalArgumentException("Unknown mavenLoggingLevel " + mavenLoggingLevel
+					+ ", expected error, warn, info or debug");
+		}
+	}
+
+	private MavenloggingBinder newMavenloggingBinder(File outputFile) throws MojoExecutionException {
+		try {
+			return new MavenloggingBinder(log, MavenloggingBinder.DEFAULT_CAPACITY, mavenLoggingSimilarLines,
+					outputFile);
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e.getCause());
+		}
+	}
+
+	private void closeMavenloggingBinder(MavenloggingBinder binder, File outputFile) {
+		if (binder != null) {
+			try {
+				binder.close();
+			} catch (IOException e) {
+				log.warn("Can't write ProGuard output to " + outputFile + ": " + e);
+			}
+		}
+	}
+
+	private void proguardInProcess(List<File> proguardJars, List<String> args, BuildReport report, File outputFile,
+			ProGuardOutputParser parser) throws MojoExecutionException {
+		log.info("proguard jar: " + proguardJars + " (in process)");
+		ClassLoader loader = InProcessProGuard.getClassLoader(proguardJars, getAllPluginArtifactDependencies(this));
+		Properties before = ProGuardLauncher.collect();
+		ProGuardLauncher.resetPeakHeap();
+		MavenloggingBinder binder = bindToMavenLogging ? newMavenloggingBinder(outputFile) : null;
+		try {
+			InProcessProGuard.run(loader, args, mavenProject.getBasedir(), proguardOutput(binder, parser));
+		} finally {
+			closeMavenloggingBinder(binder, outputFile);
+		}
+		Properties after = ProGuardLauncher.collect();
+		// the heap is shared with Maven, so this is an upper bound of what ProGuard needs
+		report.set("peakHeapBytes", Long.parseLong(after.getProperty(ProGuardLauncher.PEAK_HEAP)));
+		report.set("gcCount", Long.parseLong(after.getProperty(ProGuardLauncher.GC_COUNT))
+				- Long.parseLong(before.getProperty(ProGuardLauncher.GC_COUNT)));
+		report.set("gcMillis", Long.parseLong(after.getProperty(ProGuardLauncher.GC_TIME))
+				- Long.parseLong(before.getProperty(ProGuardLauncher.GC_TIME)));
+	}
+
+	private void proguardMain(Collection<File> proguardJars, List<String> argsList, ProGuardMojo mojo,
+			BuildReport report, File outputFile, ProGuardOutputParser parser) throws MojoExecutionException {
 
 		Java java = new Java();
 
@@ -1039,17 +2265,21 @@ public class ProGuardMojo extends AbstractMojo {
 		antProject.init();
 
 		DefaultLogger antLogger;
+		MavenloggingBinder binder = null;
 		if (bindToMavenLogging) {
-			antLogger = new MavenloggingBinder(mojo.log);
+			binder = newMavenloggingBinder(outputFile);
+			antLogger = binder;
 		} else {
 			antLogger = new DefaultLogger();
 			antLogger.setOutputPrintStream(System.out);
 			antLogger.setErrorPrintStream(System.err);
 		}
-		int logLevel = mojo.log.isDebugEnabled() ? Project.MSG_DEBUG : Project.MSG_INFO;
-		antLogger.setMessageOutputLevel(silent ? Project.MSG_ERR : logLevel);
+		antLogger.setMessageOutputLevel(silent ? Project.MSG_ERR : antLogLevel());
 
 		antProject.addBuildListener(antLogger);
+		if (parser != null) {
+			antProject.addBuildListener(parser);
+		}
 		antProject.setBaseDir(mojo.mavenProject.getBasedir());
 
 		java.setProject(antProject);
@@ -1057,30 +2287,406 @@ public class ProGuardMojo extends AbstractMojo {
 
 		mojo.getLog().info("proguard jar: " + proguardJars);
 		
-		Set<File> allDependencyFiles = getAllPluginArtifactDependencies(mojo);
+		List<File> classpath = new ArrayList<File>(getAllPluginArtifactDependencies(mojo));
+		ClassDataSharing cds = null;
+		if (mojo.classDataSharing) {
+			if (ClassDataSharing.isSupported()) {
+				cds = new ClassDataSharing(mojo.classDataSharingDirectory);
+				// an archive only fits the class path it was created with
+				Collections.sort(classpath);
+			} else {
+				mojo.getLog().warn("classDataSharing requires Java 13 or later, ignoring it");
+			}
+		}
 
-		for (File p : allDependencyFiles)
-			java.createClasspath().createPathElement().setLocation(p);
-		// java.createClasspath().setPath(System.getProperty("java.class.path"));
-		java.setClassname(mojo.proguardMainClass);
+		File statsFile = null;
+		if (buildReport) {
+			// the launcher records heap and GC statistics of the forked JVM
+			try {
+				statsFile = File.createTempFile("proguard-stats", ".properties", outputDirectory);
+				classpath.add(ProGuardWorkerClient.pluginJar());
+			} catch (IOException e) {
+				throw new MojoExecutionException("Can't prepare ProGuard statistics", e);
+			}
+			java.setClassname(ProGuardLauncher.class.getName());
+			java.createArg().setValue(statsFile.getAbsolutePath());
+			java.createArg().setValue(mojo.proguardMainClass);
+		} else {
+			java.setClassname(mojo.proguardMainClass);
+		}
 
 		java.setFailonerror(true);
 
 		java.setFork(true);
 
 		// get the maxMemory setting
-		if (mojo.maxMemory != null) {
-			java.setMaxmemory(mojo.maxMemory);
+		if (mojo.resolvedMaxMemory != null) {
+			java.setMaxmemory(mojo.resolvedMaxMemory);
+		}
+		for (String jvmArg : mojo.getJvmArgs()) {
+			java.createJvmarg().setValue(jvmArg);
+		}
+
+		for (File p : classpath)
+			java.createClasspath().createPathElement().setLocation(p);
+		// java.createClasspath().setPath(System.getProperty("java.class.path"));
+
+		File cdsArchive = null;
+		File cdsDump = null;
+		if (cds != null) {
+			cdsArchive = cds.archive(classpath);
+			if (cdsArchive.isFile()) {
+				mojo.getLog().debug("Using class data sharing archive " + cdsArchive);
+				java.createJvmarg().setValue("-XX:SharedArchiveFile=" + cdsArchive.getAbsolutePath());
+				report.set("classDataSharing", "used");
+			} else {
+				try {
+					cdsDump = cds.dumpFile(cdsArchive);
+					java.createJvmarg().setValue("-XX:ArchiveClassesAtExit=" + cdsDump.getAbsolutePath());
+					report.set("classDataSharing", "created");
+				} catch (IOException e) {
+					mojo.getLog().warn("Can't create class data sharing archive: " + e);
+				}
+			}
 		}
 
 		for (String arg : argsList) {
 			java.createArg().setValue(arg);
 		}
 
-		int result = java.executeJava();
+		long forkStart = System.currentTimeMillis();
+		int result;
+		try {
+			result = java.executeJava();
+		} finally {
+			closeMavenloggingBinder(binder, outputFile);
+		}
+		long forkEnd = System.currentTimeMillis();
+		if (statsFile != null) {
+			addForkStatistics(statsFile, forkStart, forkEnd, report);
+		} else {
+			report.add("proguard", forkEnd - forkStart);
+		}
 		if (result != 0) {
+			if (cdsDump != null) {
+				cdsDump.delete();
+			}
 			throw new MojoExecutionException("Obfuscation failed (result=" + result + ")");
 		}
+		if (cdsDump != null) {
+			try {
+				if (cds.publish(cdsDump, cdsArchive)) {
+					mojo.getLog().info("Created class data sharing archive " + cdsArchive);
+				}
+			} catch (IOException e) {
+				mojo.getLog().warn("Can't store class data sharing archive " + cdsArchive + ": " + e);
+				cdsDump.delete();
+			}
+		}
+	}
+
+	private void createAssembly(File baseFile, File archiverFile, Map<Artifact, Inclusion> libraryjars)
+			throws MojoExecutionException {
+		MavenArchiver archiver = new MavenArchiver();
+		archiver.setArchiver(jarArchiver);
+		archiver.setOutputFile(archiverFile);
+		archive.setAddMavenDescriptor(addMavenDescriptor);
+		jarArchiver.setCompress(compressionLevel != Deflater.NO_COMPRESSION);
+
+		try {
+			jarArchiver.addArchivedFileSet(baseFile);
+			for (Entry<Artifact, Inclusion> entry : libraryjars.entrySet()) {
+				File file;
+				file = getClasspathElement(entry.getKey(), mavenProject);
+				if (file.isDirectory()) {
+					getLog().info("merge project: " + entry.getKey() + " " + file);
+					jarArchiver.addDirectory(file);
+				} else {
+					getLog().info("merge artifact: " + entry.getKey());
+					
+					// Respect filter if set
+					String filter = entry.getValue().filter;
+					if(filter == null) {
+						jarArchiver.addArchivedFileSet(file);
+					} else {
+					    
+					    // Filter elements must be separated int two lists
+					    List<String> includes = new ArrayList<String>();
+					    List<String> excludes = new ArrayList<String>();
+
+					    // Elements starting with ! should be excluded while others should be included
+					    for(String element : filter.split(",")) {
+						if(element.startsWith("!")) {
+						    excludes.add(element.substring(1));
+						}else {
+						    includes.add(element);
+						}
+					    }
+
+					    // Null is important on empty includes otherwise nothing gets included
+					    jarArchiver.addArchivedFileSet(file,
+						    (includes.isEmpty() ? null : includes.toArray(new String[0])),
+						    (excludes.isEmpty() ? null : excludes.toArray(new String[0])));
+					}
+				}
+			}
+
+			archiver.createArchive(mavenProject, archive);
+
+		} catch (Exception e) {
+			throw new MojoExecutionException("Unable to create jar", e);
+		}
+	}
+
+	/**
+	 * Writes the assembly with {@link ZipMerger}, see {@link #assemblyMerge}. Returns {@code false} if it has to be
+	 * created by the archiver instead.
+	 */
+	private boolean mergeAssembly(File baseFile, File output, Map<Artifact, Inclusion> libraryjars)
+			throws MojoExecutionException {
+		if (archive.getManifestFile() != null || archive.isIndex()) {
+			log.info("assemblyMerge stream does not support a manifest file or index, using the archiver");
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		ZipMerger merger = null;
+		try {
+			Manifest manifest = Manifest.getDefaultManifest();
+			manifest.merge(new MavenArchiver().getManifest(mavenProject, archive));
+			StringWriter manifestText = new StringWriter();
+			PrintWriter manifestWriter = new PrintWriter(manifestText);
+			manifest.write(manifestWriter);
+			manifestWriter.flush();
+
+			long now = System.currentTimeMillis();
+			merger = new ZipMerger(output, compressionLevel);
+			// added first, so the manifests and descriptors of the merged jars are skipped as duplicates
+			merger.addEntry("META-INF/", new byte[0], now);
+			merger.addEntry(JarFile.MANIFEST_NAME, manifestText.toString().getBytes(StandardCharsets.UTF_8), now);
+			if (addMavenDescriptor) {
+				addMavenDescriptor(merger, now);
+			}
+
+			merger.addZip(baseFile, assemblyFilter(null, false));
+			for (Entry<Artifact, Inclusion> entry : libraryjars.entrySet()) {
+				File file = getClasspathElement(entry.getKey(), mavenProject);
+				if (file.isDirectory()) {
+					getLog().info("merge project: " + entry.getKey() + " " + file);
+					merger.addDirectory(file, assemblyFilter(null, true));
+				} else {
+					getLog().info("merge artifact: " + entry.getKey());
+					merger.addZip(file, assemblyFilter(entry.getValue().filter, false));
+				}
+			}
+			long duplicates = merger.getDuplicates();
+			ZipMerger closing = merger;
+			merger = null;
+			closing.close();
+			log.info("Merged assembly in " + (System.currentTimeMillis() - start) + " ms, skipped " + duplicates
+					+ " duplicate entries");
+			return true;
+		} catch (ZipMerger.UnsupportedZipException e) {
+			log.info(e.getMessage() + ", using the archiver");
+			return false;
+		} catch (Exception e) {
+			throw new MojoExecutionException("Unable to create jar", e);
+		} finally {
+			if (merger != null) {
+				try {
+					merger.close();
+				} catch (IOException e) {
+					log.debug("Can't close " + output + ": " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the time of {@link #outputTimestamp} in milliseconds since the epoch. Like the Maven archiver, a value of
+	 * a single character counts as not set.
+	 */
+	static long outputTime(String outputTimestamp) {
+		if (outputTimestamp == null || outputTimestamp.length() < 2) {
+			return DEFAULT_OUTPUT_TIMESTAMP;
+		}
+		long time;
+		try {
+			if (outputTimestamp.chars().allMatch(Character::isDigit)) {
+				time = Long.parseLong(outputTimestamp) * 1000;
+			} else {
+				time = OffsetDateTime.parse(outputTimestamp).toInstant().toEpochMilli();
+			}
+		} catch (NumberFormatException | DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid outputTimestamp " + outputTimestamp
+					+ ", expected e.g. 2024-01-01T00:00:00Z or seconds since the epoch");
+		}
+		return Math.max(time, DEFAULT_OUTPUT_TIMESTAMP);
+	}
+
+	/**
+	 * Rewrites the outjar {@code jar} for {@link #reproducible}.
+	 */
+	private void normalizeJar(File jar) throws MojoExecutionException {
+		if (!jar.isFile()) {
+			log.debug("Not normalizing " + jar + ", it is not a jar");
+			return;
+		}
+		long start = System.currentTimeMillis();
+		File normalized = new File(jar.getPath() + ".tmp");
+		try {
+			ZipMerger.normalize(jar, normalized, reproducibleTime, compressionLevel, ProGuardMojo::reproducibleEntry);
+			Files.move(normalized.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			log.debug("Normalized " + jar + " in " + (System.currentTimeMillis() - start) + " ms");
+		} catch (ZipMerger.UnsupportedZipException e) {
+			log.warn("Can't write " + jar + " reproducibly: " + e.getMessage());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to normalize " + jar, e);
+		} finally {
+			normalized.delete();
+		}
+	}
+
+	/**
+	 * Returns {@code content} of the entry {@code name} of a {@link #reproducible} outjar without what depends on the
+	 * build rather than on the project: the {@code Built-By} and {@code Build-Jdk} attributes the Maven archiver puts
+	 * in the manifest, and the date comment of {@code pom.properties}.
+	 */
+	static byte[] reproducibleEntry(String name, byte[] content) {
+		boolean manifest = name.equalsIgnoreCase(JarFile.MANIFEST_NAME);
+		if (!manifest && !(name.startsWith("META-INF/maven/") && name.endsWith("/pom.properties"))) {
+			return content;
+		}
+		String text = new String(content, StandardCharsets.UTF_8);
+		StringBuilder kept = new StringBuilder(text.length());
+		boolean mainSection = true;
+		boolean dropping = false;
+		// split after every line break, keeping it
+		for (String line : text.split("(?<=\n)")) {
+			String trimmed = line.trim();
+			if (manifest) {
+				if (trimmed.isEmpty()) {
+					mainSection = false;
+				}
+				if (!line.startsWith(" ")) {
+					String attribute = trimmed.toLowerCase(Locale.ROOT);
+					dropping = mainSection && (attribute.startsWith("built-by:") || attribute.startsWith("build-jdk:"));
+				}
+			} else {
+				dropping = PROPERTIES_DATE.matcher(trimmed).matches();
+			}
+			if (!dropping) {
+				kept.append(line);
+			}
+		}
+		return kept.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the {@code pom.properties} of the Maven descriptor, without the date comment of
+	 * {@link Properties#store}, so it is the same for every build of the same project version.
+	 */
+	static byte[] pomProperties(String groupId, String artifactId, String version) throws IOException {
+		Properties pomProperties = new Properties();
+		pomProperties.setProperty("groupId", groupId);
+		pomProperties.setProperty("artifactId", artifactId);
+		pomProperties.setProperty("version", version);
+		ByteArrayOutputStream stored = new ByteArrayOutputStream();
+		pomProperties.store(stored, null);
+		List<String> lines = new ArrayList<String>();
+		for (String line : new String(stored.toByteArray(), StandardCharsets.ISO_8859_1).split("\r?\n")) {
+			if (!line.startsWith("#") && !line.isEmpty()) {
+				lines.add(line);
+			}
+		}
+		Collections.sort(lines);
+		StringBuilder text = new StringBuilder("#Generated by Maven\n");
+		for (String line : lines) {
+			text.append(line).append('\n');
+		}
+		return text.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private void addMavenDescriptor(ZipMerger merger, long time) throws IOException {
+		String directory = "META-INF/maven/" + mavenProject.getGroupId() + "/" + mavenProject.getArtifactId() + "/";
+		merger.addEntry("META-INF/maven/", new byte[0], time);
+		merger.addEntry("META-INF/maven/" + mavenProject.getGroupId() + "/", new byte[0], time);
+		merger.addEntry(directory, new byte[0], time);
+		if (mavenProject.getFile() != null && mavenProject.getFile().isFile()) {
+			merger.addEntry(directory + "pom.xml", FileUtils.readFileToByteArray(mavenProject.getFile()), time);
+		}
+		merger.addEntry(directory + "pom.properties",
+				pomProperties(mavenProject.getGroupId(), mavenProject.getArtifactId(), mavenProject.getVersion()), time);
+	}
+
+	/**
+	 * Returns the entry filter of an {@link Inclusion} filter, applied like the archiver applies it. Without a filter
+	 * everything is included, except the default excludes of directories.
+	 */
+	static Predicate<String> assemblyFilter(String filter, boolean defaultExcludes) {
+		if (filter == null && !defaultExcludes) {
+			return name -> true;
+		}
+		List<String> includes = new ArrayList<String>();
+		List<String> excludes = new ArrayList<String>();
+		if (filter != null) {
+			for (String element : filter.split(",")) {
+				if (element.startsWith("!")) {
+					excludes.add(element.substring(1));
+				} else {
+					includes.add(element);
+				}
+			}
+		}
+		// like the archiver's IncludeExcludeFileSelector, which always adds the default excludes
+		excludes.addAll(Arrays.asList(org.codehaus.plexus.util.FileUtils.getDefaultExcludes()));
+		final List<String> includePatterns =
+				includes.isEmpty() ? Collections.singletonList("**/*") : selectorPatterns(includes);
+		final List<String> excludePatterns = selectorPatterns(excludes);
+		return name -> {
+			String path = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+			return matchesAny(includePatterns, path) && !matchesAny(excludePatterns, path);
+		};
+	}
+
+	private static List<String> selectorPatterns(List<String> elements) {
+		List<String> patterns = new ArrayList<String>();
+		for (String element : elements) {
+			String pattern = element.trim().replace('\\', '/');
+			patterns.add(pattern.endsWith("/") ? pattern + "**" : pattern);
+		}
+		return patterns;
+	}
+
+	private static boolean matchesAny(List<String> patterns, String path) {
+		for (String pattern : patterns) {
+			if (SelectorUtils.matchPath(pattern, path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addForkStatistics(File statsFile, long forkStart, long forkEnd, BuildReport report) {
+		Properties stats = new Properties();
+		try (FileInputStream in = new FileInputStream(statsFile)) {
+			stats.load(in);
+		} catch (IOException e) {
+			log.debug("No ProGuard statistics: " + e);
+		} finally {
+			statsFile.delete();
+		}
+		if (stats.getProperty(ProGuardLauncher.MAIN_START) == null) {
+			report.add("proguard", forkEnd - forkStart);
+			return;
+		}
+		long mainStart = Long.parseLong(stats.getProperty(ProGuardLauncher.MAIN_START));
+		long mainEnd = Long.parseLong(stats.getProperty(ProGuardLauncher.MAIN_END));
+		report.add("jvmStartup", mainStart - forkStart);
+		report.add("proguard", mainEnd - mainStart);
+		report.add("jvmShutdown", Math.max(0, forkEnd - mainEnd));
+		report.set("peakHeapBytes", Long.parseLong(stats.getProperty(ProGuardLauncher.PEAK_HEAP)));
+		report.set("gcCount", Long.parseLong(stats.getProperty(ProGuardLauncher.GC_COUNT)));
+		report.set("gcMillis", Long.parseLong(stats.getProperty(ProGuardLauncher.GC_TIME)));
 	}
 
 	private String nameNoType(String fileName) {
@@ -1113,32 +2719,120 @@ public class ProGuardMojo extends AbstractMojo {
 		}
 	}
 
-	private Set<Artifact> getDependencies(final Inclusion inc, MavenProject mavenProject)
-			throws MojoExecutionException {
+	/**
+	 * Returns the project artifacts matched by each inclusion, matching all inclusions in a single pass.
+	 */
+	private Map<Inclusion, Set<Artifact>> getDependencies(List<Inclusion> inclusions, MavenProject mavenProject) {
+		Map<Inclusion, Set<Artifact>> result = new HashMap<Inclusion, Set<Artifact>>();
+		for (Inclusion inc : inclusions) {
+			result.put(inc, new LinkedHashSet<Artifact>());
+		}
+		DependencyScanCache.FilterVerdicts verdicts = dependencyScanCache.filterVerdicts(inclusions);
 		@SuppressWarnings("unchecked")
 		Set<Artifact> dependencies = mavenProject.getArtifacts();
-		Set<Artifact> result = new HashSet<Artifact>();
 		for (Artifact artifact : dependencies) {
-			if (inc.match(artifact)) {
-				result.add(artifact);
+			BitSet matches = verdicts.match(artifact);
+			for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+				result.get(inclusions.get(i)).add(artifact);
 			}
 		}
-		if (result.isEmpty()) {
-			log.warn(String.format("No artifact found : %s:%s", inc.artifactId, inc.groupId));
+		for (Inclusion inc : inclusions) {
+			if (result.get(inc).isEmpty()) {
+				log.warn(String.format("No artifact found : %s:%s", inc.artifactId, inc.groupId));
+			}
 		}
 		return result;
 	}
 
+	/**
+	 * Returns {@code libraries} without those whose classes all come from earlier ProGuard inputs, and reports the
+	 * classes defined by more than one input.
+	 */
+	private List<File> deduplicateLibraries(List<String> args, List<File> libraries) throws MojoExecutionException {
+		List<ClasspathOverlaps.Input> inputs = new ArrayList<ClasspathOverlaps.Input>();
+		for (int i = 0; i < args.size() - 1; i++) {
+			if (ProGuardArgs.INJARS.equals(args.get(i))) {
+				String value = args.get(i + 1);
+				inputs.add(new ClasspathOverlaps.Input(
+						ProGuardArgs.resolve(ProGuardArgs.path(value), mavenProject.getBasedir()), false,
+						isCompleteInjarFilter(ProGuardArgs.filter(value))));
+			}
+		}
+		for (File library : libraries) {
+			inputs.add(new ClasspathOverlaps.Input(library, true, true));
+		}
+
+		ClasspathOverlaps.Result result;
+		try {
+			result = new ClasspathOverlaps(0).analyze(inputs);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Can't list the classes of the ProGuard inputs", e);
+		}
+		report.set("duplicateClasses", result.duplicateClasses);
+		report.set("redundantLibraries", result.redundantLibraries.size());
+		log.info(result.duplicateClasses + " classes defined by more than one input, " + result.redundantLibraries.size()
+				+ " of " + libraries.size() + " libraries redundant (" + result.millis + " ms)");
+		int shown = 0;
+		for (Entry<String, Integer> overlap : ClasspathOverlaps.largestOverlaps(result)) {
+			String message = "    " + overlap.getValue() + " classes in both " + overlap.getKey();
+			if (shown++ < 10) {
+				log.info(message);
+			} else {
+				log.debug(message);
+			}
+		}
+
+		List<File> remaining = new ArrayList<File>(libraries);
+		for (File library : result.redundantLibraries) {
+			log.info("--- DROP libraryjars:" + library.getName() + ", all its classes come from earlier inputs");
+			remaining.remove(library);
+		}
+		return remaining;
+	}
+
+	/**
+	 * Returns whether an injar {@code filter} lets all classes through, only leaving out descriptors.
+	 */
+	private static boolean isCompleteInjarFilter(String filter) {
+		if (filter == null) {
+			return true;
+		}
+		for (String part : filter.split(",")) {
+			if (!part.equals(MANIFEST_FILTER) && !part.equals(MAVEN_DESCRIPTORS_FILTER)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a library to the ProGuard arguments, or to the libraries to stage for {@link #putLibraryJarsInTempDir}.
+	 */
+	private void addLibraryJar(File file, List<String> args, List<File> libraryJars) {
+		File library = file;
+		if (libraryStubs != null) {
+			try {
+				library = libraryStubs.stub(file);
+			} catch (IOException e) {
+				log.warn("Can't create API stub of " + file + ", using the library itself: " + e);
+			}
+		}
+		if (putLibraryJarsInTempDir) {
+			libraryJars.add(library);
+		} else {
+			args.add("-libraryjars");
+			args.add(libFileToStringWithInLibsFilter(library));
+		}
+	}
+
 	private boolean isExclusion(Artifact artifact) {
 		if (exclusions == null) {
 			return false;
 		}
-		for (Exclusion excl : exclusions) {
-			if (excl.match(artifact)) {
-				return true;
-			}
+		if (exclusionVerdicts == null) {
+			exclusionVerdicts = dependencyScanCache.filterVerdicts(exclusions);
 		}
-		return false;
+		return !exclusionVerdicts.match(artifact).isEmpty();
 	}
 
 	private File getClasspathElement(Artifact artifact, MavenProject mavenProject) throws MojoExecutionException {
@@ -1157,10 +2851,12 @@ public class ProGuardMojo extends AbstractMojo {
 			return file;
 		} else {
 			File file = artifact.getFile();
-			log.debug("Found file: " + file.getAbsolutePath());
-			if ((file == null) || (!file.exists())) {
+			if (!dependencyScanCache.exists(artifact)) {
 				throw new MojoExecutionException("Dependency Resolution Required " + artifact);
 			}
+			if (log.isDebugEnabled()) {
+				log.debug("Found file: " + file.getAbsolutePath());
+			}
 			return file;
 		}
 	}
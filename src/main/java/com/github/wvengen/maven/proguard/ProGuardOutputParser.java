@@ -0,0 +1,286 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Classifies the notes and warnings in the output of ProGuard, for {@code warningsReport}.
+ *
+ * <p>Lines are parsed as they come and only counted, by kind, by the package of the class they are about and by the
+ * package of the class it references, so memory depends on the number of packages rather than on the amount of
+ * output. {@link #write} adds the input each package comes from and writes the counts as JSON.
+ */
+final class ProGuardOutputParser implements BuildListener {
+
+    static final String UNRESOLVED_CLASS = "unresolvedClass";
+    static final String UNRESOLVED_MEMBER = "unresolvedMember";
+    static final String UNRESOLVED_SUPERCLASS = "unresolvedSuperclass";
+    static final String LIBRARY_EXTENDS_PROGRAM = "libraryExtendsProgram";
+    static final String DUPLICATE_DEFINITION = "duplicateDefinition";
+    static final String REFLECTION = "reflection";
+    static final String UNKNOWN_CONFIGURATION_CLASS = "unknownConfigurationClass";
+    static final String CONFIGURATION = "configuration";
+    static final String OTHER = "other";
+
+    /**
+     * Number of lines of one kind about classes of one package referencing classes of another.
+     */
+    static final class Entry {
+        final String kind;
+        final String severity;
+        final String packageName;
+        final String referencedPackage;
+        String artifact;
+        int count;
+
+        Entry(String kind, String severity, String packageName, String referencedPackage) {
+            this.kind = kind;
+            this.severity = severity;
+            this.packageName = packageName;
+            this.referencedPackage = referencedPackage;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int total;
+
+    @Override
+    public void messageLogged(BuildEvent event) {
+        if (event.getMessage() != null) {
+            line(event.getMessage());
+        }
+    }
+
+    /**
+     * Counts {@code line} if it is a ProGuard note or warning.
+     */
+    void line(String line) {
+        String severity;
+        String message;
+        if (line.startsWith("Warning: ")) {
+            severity = "warning";
+            message = line.substring("Warning: ".length());
+        } else if (line.startsWith("Note: ")) {
+            severity = "note";
+            message = line.substring("Note: ".length());
+        } else {
+            return;
+        }
+        if (message.startsWith("there were ") || message.startsWith("there was ")) {
+            // ProGuard's own summary of the lines before
+            return;
+        }
+
+        String kind;
+        String subject = null;
+        String referenced = null;
+        if (message.startsWith("duplicate definition of ")) {
+            kind = DUPLICATE_DEFINITION;
+            subject = between(message, '[', ']');
+        } else if (message.startsWith("library class ") && message.contains(" extends or implements program class ")) {
+            kind = LIBRARY_EXTENDS_PROGRAM;
+            subject = firstWord(message.substring("library class ".length()));
+            referenced = lastWord(message);
+        } else if (message.startsWith("the configuration refers to the unknown class ")) {
+            kind = UNKNOWN_CONFIGURATION_CLASS;
+            subject = between(message, '\'', '\'');
+        } else if (message.startsWith("the configuration ")) {
+            kind = CONFIGURATION;
+            subject = lastQuoted(message);
+        } else {
+            int colon = message.indexOf(": ");
+            String rest = message;
+            if (colon > 0 && message.lastIndexOf(' ', colon) < 0) {
+                subject = message.substring(0, colon);
+                rest = message.substring(colon + 2);
+            }
+            if (rest.startsWith("can't find referenced class ")) {
+                kind = UNRESOLVED_CLASS;
+                referenced = lastWord(rest);
+            } else if (rest.startsWith("can't find referenced method ") || rest.startsWith("can't find referenced field ")) {
+                kind = UNRESOLVED_MEMBER;
+                referenced = lastWord(rest);
+            } else if (rest.startsWith("can't find superclass or interface ")) {
+                kind = UNRESOLVED_SUPERCLASS;
+                referenced = lastWord(rest);
+            } else if (rest.startsWith("can't find dynamically referenced class ")) {
+                kind = REFLECTION;
+                referenced = lastWord(rest);
+            } else if (rest.contains("dynamically") || rest.contains("Class.forName") || rest.contains("reflect")) {
+                kind = REFLECTION;
+                if (subject == null) {
+                    subject = firstWord(rest);
+                }
+            } else {
+                kind = OTHER;
+            }
+        }
+        count(kind, severity, packageName(subject), packageName(referenced));
+    }
+
+    private synchronized void count(String kind, String severity, String packageName, String referencedPackage) {
+        String key = kind + '\t' + severity + '\t' + packageName + '\t' + referencedPackage;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(kind, severity, packageName, referencedPackage);
+            entries.put(key, entry);
+        }
+        entry.count++;
+        total++;
+    }
+
+    synchronized int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of lines of every kind.
+     */
+    synchronized Map<String, Integer> kinds() {
+        Map<String, Integer> kinds = new TreeMap<>();
+        for (Entry entry : entries.values()) {
+            Integer count = kinds.get(entry.kind);
+            kinds.put(entry.kind, count == null ? entry.count : count + entry.count);
+        }
+        return kinds;
+    }
+
+    /**
+     * Returns the entries with the most lines first, their artifact being the first of {@code inputs} with classes in
+     * their package.
+     */
+    synchronized List<Entry> entries(List<File> inputs) throws IOException {
+        Set<String> packages = new HashSet<>();
+        for (Entry entry : entries.values()) {
+            if (entry.packageName != null) {
+                packages.add(entry.packageName);
+            }
+        }
+        Map<String, String> artifacts = new HashMap<>();
+        for (File input : inputs) {
+            if (artifacts.size() == packages.size()) {
+                break;
+            }
+            for (String className : ClasspathOverlaps.classNames(input)) {
+                int end = className.lastIndexOf('/');
+                String packageName = end < 0 ? "" : className.substring(0, end).replace('/', '.');
+                if (packages.contains(packageName) && !artifacts.containsKey(packageName)) {
+                    artifacts.put(packageName, input.getName());
+                }
+            }
+        }
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        for (Entry entry : sorted) {
+            entry.artifact = artifacts.get(entry.packageName);
+        }
+        Collections.sort(sorted, (a, b) -> a.count != b.count ? b.count - a.count
+                : (a.kind + a.packageName + a.referencedPackage).compareTo(b.kind + b.packageName + b.referencedPackage));
+        return sorted;
+    }
+
+    /**
+     * Writes the counts to {@code json}, finding the artifacts in {@code inputs}.
+     */
+    void write(File json, List<File> inputs) throws IOException {
+        StringBuilder out = new StringBuilder("{\n");
+        out.append("  \"total\": ").append(getTotal()).append(",\n");
+        out.append("  \"kinds\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Integer> kind : kinds().entrySet()) {
+            out.append(separator).append("    ").append(BuildReport.quote(kind.getKey())).append(": ")
+                    .append(kind.getValue());
+            separator = ",\n";
+        }
+        out.append("\n  },\n");
+        out.append("  \"entries\": [");
+        separator = "\n";
+        for (Entry entry : entries(inputs)) {
+            out.append(separator).append("    {\"kind\": ").append(BuildReport.quote(entry.kind))
+                    .append(", \"severity\": ").append(BuildReport.quote(entry.severity))
+                    .append(", \"package\": ").append(quoteOrNull(entry.packageName))
+                    .append(", \"artifact\": ").append(quoteOrNull(entry.artifact))
+                    .append(", \"referencedPackage\": ").append(quoteOrNull(entry.referencedPackage))
+                    .append(", \"count\": ").append(entry.count).append('}');
+            separator = ",\n";
+        }
+        out.append("\n  ]\n}\n");
+        try (Writer writer = Files.newBufferedWriter(json.toPath(), StandardCharsets.UTF_8)) {
+            writer.append(out);
+        }
+    }
+
+    private static String quoteOrNull(String value) {
+        return value == null ? "null" : BuildReport.quote(value);
+    }
+
+    /**
+     * Returns the package of a class name as ProGuard prints it, or {@code null} if there is no class.
+     */
+    static String packageName(String className) {
+        if (className == null || className.isEmpty()) {
+            return null;
+        }
+        String name = className.replace('/', '.');
+        int end = name.lastIndexOf('.');
+        return end < 0 ? "" : name.substring(0, end);
+    }
+
+    private static String between(String message, char start, char end) {
+        int from = message.indexOf(start);
+        int to = from < 0 ? -1 : message.indexOf(end, from + 1);
+        return to < 0 ? null : message.substring(from + 1, to);
+    }
+
+    private static String lastQuoted(String message) {
+        int to = message.lastIndexOf('\'');
+        int from = to <= 0 ? -1 : message.lastIndexOf('\'', to - 1);
+        return from < 0 ? null : firstWord(message.substring(from + 1, to));
+    }
+
+    private static String firstWord(String message) {
+        int end = message.indexOf(' ');
+        return end < 0 ? message : message.substring(0, end);
+    }
+
+    private static String lastWord(String message) {
+        return message.substring(message.lastIndexOf(' ') + 1);
+    }
+
+    @Override
+    public void buildStarted(BuildEvent event) {
+    }
+
+    @Override
+    public void buildFinished(BuildEvent event) {
+    }
+
+    @Override
+    public void targetStarted(BuildEvent event) {
+    }
+
+    @Override
+    public void targetFinished(BuildEvent event) {
+    }
+
+    @Override
+    public void taskStarted(BuildEvent event) {
+    }
+
+    @Override
+    public void taskFinished(BuildEvent event) {
+    }
+}
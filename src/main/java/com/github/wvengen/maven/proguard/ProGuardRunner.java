@@ -0,0 +1,46 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * Calls the ProGuard API through reflection, so ProGuard does not have to be on the plugin class path.
+ *
+ * <p>This class must not depend on any Maven classes: it is also loaded by {@link ProGuardWorker} outside of Maven.
+ */
+final class ProGuardRunner {
+
+    private ProGuardRunner() {
+    }
+
+    /**
+     * Parses {@code args} like the ProGuard command line does and runs ProGuard with the resulting configuration.
+     * Relative file names in {@code args} are resolved against {@code baseDir}.
+     */
+    static void execute(ClassLoader loader, String[] args, File baseDir) throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            Class<?> configurationClass = loader.loadClass("proguard.Configuration");
+            Class<?> parserClass = loader.loadClass("proguard.ConfigurationParser");
+            Class<?> proguardClass = loader.loadClass("proguard.ProGuard");
+
+            Object configuration = configurationClass.getConstructor().newInstance();
+            Object parser = parserClass.getConstructor(String[].class, File.class, Properties.class)
+                    .newInstance(args, baseDir, System.getProperties());
+            try {
+                parserClass.getMethod("parse", configurationClass).invoke(parser, configuration);
+            } finally {
+                if (parser instanceof AutoCloseable) {
+                    ((AutoCloseable) parser).close();
+                }
+            }
+
+            Object proguard = proguardClass.getConstructor(configurationClass).newInstance(configuration);
+            proguardClass.getMethod("execute").invoke(proguard);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+}
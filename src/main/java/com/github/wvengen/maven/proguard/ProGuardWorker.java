@@ -0,0 +1,194 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+
+/**
+ * Long-lived ProGuard process that runs ProGuard for any number of builds, see {@link ProGuardWorkerClient}.
+ *
+ * <p>The worker listens on a loopback port which it publishes, together with a secret token, in the port file given as
+ * the first argument. It handles one request at a time and exits when no request came in for the idle timeout (in
+ * seconds) given as the second argument.
+ *
+ * <p>This class must not depend on any Maven classes: it runs with only the ProGuard class path and the plugin jar.
+ */
+public final class ProGuardWorker {
+
+    static final byte FRAME_OUT = 'O';
+    static final byte FRAME_ERR = 'E';
+    static final byte FRAME_RESULT = 'R';
+
+    private ProGuardWorker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ProGuardWorker <port file> <idle timeout seconds>");
+            System.exit(2);
+        }
+        File portFile = new File(args[0]);
+        int idleTimeout = Integer.parseInt(args[1]);
+
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        String token = Digests.hex(secret);
+
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(idleTimeout * 1000);
+            publish(portFile, server.getLocalPort() + "\n" + token + "\n");
+            originalOut.println("ProGuard worker listening on port " + server.getLocalPort());
+
+            while (true) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    originalOut.println("ProGuard worker idle for " + idleTimeout + "s, exiting");
+                    break;
+                }
+                try {
+                    handle(socket, token);
+                } catch (EOFException e) {
+                    // a client checking whether the worker is alive
+                } catch (IOException e) {
+                    originalErr.println("ProGuard worker request failed: " + e);
+                } finally {
+                    System.setOut(originalOut);
+                    System.setErr(originalErr);
+                    socket.close();
+                }
+            }
+        } finally {
+            Files.deleteIfExists(portFile.toPath());
+        }
+    }
+
+    private static void handle(Socket socket, String token) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (!token.equals(in.readUTF())) {
+            return;
+        }
+        File baseDir = new File(in.readUTF());
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        PrintStream forwardOut = new PrintStream(new LineForwardingStream(out, FRAME_OUT), true, "UTF-8");
+        PrintStream forwardErr = new PrintStream(new LineForwardingStream(out, FRAME_ERR), true, "UTF-8");
+        System.setOut(forwardOut);
+        System.setErr(forwardErr);
+
+        int result = 0;
+        String message = "";
+        try {
+            ProGuardRunner.execute(ProGuardWorker.class.getClassLoader(), args, baseDir);
+        } catch (Throwable e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            StringWriter trace = new StringWriter();
+            cause.printStackTrace(new PrintWriter(trace));
+            forwardErr.print(trace);
+            result = 1;
+            message = String.valueOf(cause);
+        }
+        forwardOut.flush();
+        forwardErr.flush();
+
+        synchronized (out) {
+            out.writeByte(FRAME_RESULT);
+            out.writeInt(result);
+            out.writeUTF(message);
+            out.flush();
+        }
+    }
+
+    private static void publish(File portFile, String content) throws IOException {
+        File dir = portFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        File tmp = File.createTempFile(portFile.getName(), ".tmp", dir);
+        // the token is what keeps other users from running ProGuard through this worker
+        tmp.setReadable(false, false);
+        tmp.setReadable(true, true);
+        Files.write(tmp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), portFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Sends everything written to it as one frame per line.
+     */
+    private static final class LineForwardingStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte frame;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineForwardingStream(DataOutputStream out, byte frame) {
+            this.out = out;
+            this.frame = frame;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                sendLine();
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (line.size() > 0) {
+                sendLine();
+            }
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        private void sendLine() throws IOException {
+            byte[] bytes = line.toByteArray();
+            line.reset();
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            // writeUTF is limited to 64k, longer lines are split
+            for (int start = 0; start < text.length() || start == 0; start += 16384) {
+                synchronized (out) {
+                    out.writeByte(frame);
+                    out.writeUTF(text.substring(start, Math.min(text.length(), start + 16384)));
+                }
+            }
+        }
+    }
+}
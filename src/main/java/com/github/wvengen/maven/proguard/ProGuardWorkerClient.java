@@ -0,0 +1,223 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.tools.ant.util.JavaEnvUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands ProGuard runs to a {@link ProGuardWorker}, starting one when none is running yet.
+ *
+ * <p>Workers are shared by all builds of the same user. A worker is identified by the contents of the ProGuard and
+ * plugin jars, the JVM, the max memory and the JVM arguments it runs with; its port file lives in the
+ * {@code proguard-maven-plugin-workers} directory under {@code java.io.tmpdir}, next to a log file with the output of
+ * the worker itself.
+ */
+final class ProGuardWorkerClient {
+
+    /**
+     * Receives the output of ProGuard.
+     */
+    interface Output {
+        void out(String line);
+
+        void err(String line);
+    }
+
+    private static final long STARTUP_TIMEOUT_MILLIS = 60000;
+
+    private static final Map<String, Object> START_LOCKS = new ConcurrentHashMap<>();
+
+    private final File portFile;
+    private final List<String> command;
+
+    /**
+     * @param classpath   class path of the worker JVM, including the ProGuard jars
+     * @param maxMemory   max heap of the worker JVM, or {@code null} for the JVM default
+     * @param jvmArgs     further arguments of the worker JVM
+     * @param idleTimeout seconds after which an unused worker exits
+     */
+    ProGuardWorkerClient(Collection<File> proguardJars, Collection<File> classpath, String maxMemory,
+            List<String> jvmArgs, int idleTimeout) throws IOException {
+        List<File> fullClasspath = new ArrayList<>(classpath);
+        fullClasspath.add(pluginJar());
+
+        StringBuilder key = new StringBuilder();
+        key.append(JavaEnvUtils.getJreExecutable("java")).append('\n');
+        key.append(maxMemory).append('\n');
+        for (String jvmArg : jvmArgs) {
+            key.append(jvmArg).append('\n');
+        }
+        // by content, so a rebuilt snapshot of the plugin or of ProGuard doesn't reuse a worker with the old classes
+        key.append(pluginJar()).append(' ').append(Digests.sha256(pluginJar())).append('\n');
+        for (File jar : proguardJars) {
+            key.append(jar.getAbsolutePath()).append(' ').append(Digests.sha256(jar)).append('\n');
+        }
+        File workerDir = new File(System.getProperty("java.io.tmpdir"), "proguard-maven-plugin-workers");
+        this.portFile = new File(workerDir, Digests.sha256(key.toString()).substring(0, 16) + ".port");
+
+        StringBuilder path = new StringBuilder();
+        for (File file : fullClasspath) {
+            if (path.length() > 0) {
+                path.append(File.pathSeparatorChar);
+            }
+            path.append(file.getAbsolutePath());
+        }
+        command = new ArrayList<>();
+        command.add(JavaEnvUtils.getJreExecutable("java"));
+        if (maxMemory != null) {
+            command.add("-Xmx" + maxMemory);
+        }
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(path.toString());
+        command.add(ProGuardWorker.class.getName());
+        command.add(portFile.getAbsolutePath());
+        command.add(String.valueOf(idleTimeout));
+    }
+
+    /**
+     * Runs ProGuard in the worker and returns its exit code. An {@link IOException} means the worker could not be
+     * reached or died during the run.
+     */
+    int run(List<String> args, File baseDir, Output output) throws IOException {
+        String[] endpoint = connectInfo();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(endpoint[0]))) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(endpoint[1]);
+            out.writeUTF(baseDir.getAbsolutePath());
+            out.writeInt(args.size());
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte frame = in.readByte();
+                switch (frame) {
+                    case ProGuardWorker.FRAME_OUT:
+                        output.out(in.readUTF());
+                        break;
+                    case ProGuardWorker.FRAME_ERR:
+                        output.err(in.readUTF());
+                        break;
+                    case ProGuardWorker.FRAME_RESULT:
+                        int result = in.readInt();
+                        String message = in.readUTF();
+                        if (result != 0 && !message.isEmpty()) {
+                            output.err(message);
+                        }
+                        return result;
+                    default:
+                        throw new IOException("Unexpected response from ProGuard worker: " + frame);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the port and token of a running worker, starting one if needed.
+     */
+    private String[] connectInfo() throws IOException {
+        Object lock = START_LOCKS.computeIfAbsent(portFile.getAbsolutePath(), k -> new Object());
+        synchronized (lock) {
+            String[] endpoint = readPortFile();
+            if (endpoint != null && isAlive(endpoint)) {
+                return endpoint;
+            }
+            File workerDir = portFile.getParentFile();
+            if (!workerDir.isDirectory() && !workerDir.mkdirs()) {
+                throw new IOException("Can't create " + workerDir);
+            }
+            // other builds may try to start the same worker at the same time
+            File lockFile = new File(workerDir, portFile.getName() + ".lock");
+            try (RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                FileLock fileLock = channel.lock();
+                try {
+                    endpoint = readPortFile();
+                    if (endpoint != null && isAlive(endpoint)) {
+                        return endpoint;
+                    }
+                    Files.deleteIfExists(portFile.toPath());
+                    return startWorker();
+                } finally {
+                    fileLock.release();
+                }
+            }
+        }
+    }
+
+    private String[] startWorker() throws IOException {
+        File logFile = new File(portFile.getParentFile(), portFile.getName().replace(".port", ".log"));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile));
+        Process process = builder.start();
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            String[] endpoint = readPortFile();
+            if (endpoint != null) {
+                return endpoint;
+            }
+            if (!process.isAlive()) {
+                throw new IOException("ProGuard worker exited with " + process.exitValue() + ", see " + logFile);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting ProGuard worker", e);
+            }
+        }
+        process.destroy();
+        throw new IOException("ProGuard worker did not start in time, see " + logFile);
+    }
+
+    private String[] readPortFile() throws IOException {
+        if (!portFile.isFile()) {
+            return null;
+        }
+        String[] lines = new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8).split("\n");
+        return lines.length >= 2 ? new String[]{lines[0].trim(), lines[1].trim()} : null;
+    }
+
+    private static boolean isAlive(String[] endpoint) {
+        try {
+            new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(endpoint[0])).close();
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the jar, or class directory, the plugin classes are loaded from.
+     */
+    static File pluginJar() throws IOException {
+        try {
+            return new File(ProGuardWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Can't locate the plugin jar", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Limits the number of ProGuard runs at the same time, and the sum of their max heaps, for {@code maxProcesses} and
+ * {@code memoryBudget}.
+ *
+ * <p>Within a Maven session all executions share {@link #SHARED}, which admits runs strictly in the order they asked,
+ * so a large run is not starved by smaller ones passing it. A run that exceeds the memory budget on its own is admitted
+ * when nothing else runs. Across builds, e.g. concurrent builds on one agent, the number of runs is limited by locks
+ * on slot files in a lock directory; the memory budget only applies within a session.
+ */
+final class ProcessAdmission {
+
+    /**
+     * The right to run ProGuard, until closed.
+     */
+    final class Permit implements Closeable {
+        private final long memory;
+        private final long waitMillis;
+        private final RandomAccessFile slotFile;
+        private final FileLock slotLock;
+        private boolean closed;
+
+        Permit(long memory, long waitMillis, RandomAccessFile slotFile, FileLock slotLock) {
+            this.memory = memory;
+            this.waitMillis = waitMillis;
+            this.slotFile = slotFile;
+            this.slotLock = slotLock;
+        }
+
+        /**
+         * Returns how long the run waited to be admitted.
+         */
+        long getWaitMillis() {
+            return waitMillis;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (ProcessAdmission.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                release(memory);
+            }
+            if (slotFile != null) {
+                try {
+                    slotLock.release();
+                } finally {
+                    slotFile.close();
+                }
+            }
+        }
+    }
+
+    static final ProcessAdmission SHARED = new ProcessAdmission();
+
+    private static final long SLOT_POLL_MILLIS = 200;
+
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private int running;
+    private long memoryInUse;
+
+    /**
+     * Waits until a run using {@code memory} bytes of heap is admitted.
+     *
+     * @param maxProcesses  max runs at the same time, or 0 for no limit
+     * @param memoryBudget  max sum of the heaps of the runs at the same time, or 0 for no limit
+     * @param memory        heap of this run, or 0 if unknown
+     * @param lockDirectory directory of the slot files shared with other builds, or {@code null} to only limit the runs
+     *                      of this session
+     */
+    Permit acquire(int maxProcesses, long memoryBudget, long memory, File lockDirectory)
+            throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Object ticket = new Object();
+        synchronized (this) {
+            queue.addLast(ticket);
+            try {
+                while (queue.peekFirst() != ticket || !fits(maxProcesses, memoryBudget, memory)) {
+                    wait();
+                }
+            } finally {
+                queue.remove(ticket);
+                notifyAll();
+            }
+            running++;
+            memoryInUse += memory;
+        }
+
+        if (maxProcesses <= 0 || lockDirectory == null) {
+            return new Permit(memory, System.currentTimeMillis() - start, null, null);
+        }
+        try {
+            return acquireSlot(maxProcesses, memory, start, lockDirectory);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            release(memory);
+            throw e;
+        }
+    }
+
+    private Permit acquireSlot(int maxProcesses, long memory, long start, File lockDirectory)
+            throws IOException, InterruptedException {
+        if (!lockDirectory.isDirectory() && !lockDirectory.mkdirs()) {
+            throw new IOException("Can't create " + lockDirectory);
+        }
+        while (true) {
+            for (int slot = 0; slot < maxProcesses; slot++) {
+                RandomAccessFile file = new RandomAccessFile(new File(lockDirectory, "slot-" + slot + ".lock"), "rw");
+                FileLock lock = null;
+                try {
+                    lock = file.getChannel().tryLock();
+                } catch (OverlappingFileLockException e) {
+                    // held by another run of this JVM
+                } finally {
+                    if (lock == null) {
+                        file.close();
+                    }
+                }
+                if (lock != null) {
+                    return new Permit(memory, System.currentTimeMillis() - start, file, lock);
+                }
+            }
+            Thread.sleep(SLOT_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Returns the number of runs admitted and not closed yet.
+     */
+    synchronized int getRunning() {
+        return running;
+    }
+
+    private synchronized void release(long memory) {
+        running--;
+        memoryInUse -= memory;
+        notifyAll();
+    }
+
+    private boolean fits(int maxProcesses, long memoryBudget, long memory) {
+        if (running == 0) {
+            return true;
+        }
+        if (maxProcesses > 0 && running >= maxProcesses) {
+            return false;
+        }
+        return memoryBudget <= 0 || memoryInUse + memory <= memoryBudget;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import com.github.wvengen.maven.proguard.retrace.MappingIndex;
+import com.github.wvengen.maven.proguard.retrace.Retracer;
+
+/**
+ * Decodes obfuscated stack traces with the mapping file of the {@code proguard} goal.
+ *
+ * <p>The mapping is parsed into a compact index once, and kept in {@link #indexFile} until the mapping changes, so
+ * decoding a batch of traces doesn't parse the whole mapping every time.
+ *
+ * @goal retrace
+ * @description Decode obfuscated stack traces with a ProGuard mapping file
+ * @requiresProject false
+ * @threadSafe
+ */
+public class RetraceMojo extends AbstractMojo {
+
+	/**
+	 * The mapping file written by the {@code proguard} goal.
+	 *
+	 * @parameter property="proguard.retrace.mappingFile" default-value="${project.build.directory}/proguard_map.txt"
+	 */
+	private File mappingFile;
+
+	/**
+	 * The index of {@link #mappingFile}, created or updated when it is older than the mapping file.
+	 *
+	 * @parameter property="proguard.retrace.indexFile" default-value="${project.build.directory}/proguard_map.retrace"
+	 */
+	private File indexFile;
+
+	/**
+	 * The file with the stack traces to decode. By default they are read from the standard input.
+	 *
+	 * @parameter property="proguard.retrace.input"
+	 */
+	private File input;
+
+	/**
+	 * The file to write the decoded stack traces to. By default they are written to the standard output.
+	 *
+	 * @parameter property="proguard.retrace.output"
+	 */
+	private File output;
+
+	/**
+	 * Number of threads decoding large inputs, or 0 for one per processor.
+	 *
+	 * @parameter property="proguard.retrace.threads" default-value="1"
+	 */
+	private int threads;
+
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (!mappingFile.isFile()) {
+			throw new MojoFailureException("Mapping file " + mappingFile + " does not exist");
+		}
+		MappingIndex index;
+		try {
+			index = loadIndex();
+		} catch (IOException e) {
+			throw new MojoExecutionException("Can't index " + mappingFile, e);
+		}
+
+		int decodeThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		Charset charset = input == null ? Charset.defaultCharset() : StandardCharsets.UTF_8;
+		try (Reader reader = input == null ? new InputStreamReader(System.in, charset)
+				: Files.newBufferedReader(input.toPath(), charset)) {
+			if (output == null) {
+				// System.out stays open for the rest of the build
+				Writer writer = new OutputStreamWriter(System.out, Charset.defaultCharset());
+				new Retracer(index).retrace(new BufferedReader(reader, 65536), writer, decodeThreads);
+			} else {
+				File parent = output.getAbsoluteFile().getParentFile();
+				if (!parent.isDirectory() && !parent.mkdirs()) {
+					throw new MojoExecutionException("Can't create " + parent);
+				}
+				try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+					new Retracer(index).retrace(new BufferedReader(reader, 65536), writer, decodeThreads);
+				}
+				getLog().info("Decoded stack traces written to " + output);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Can't decode stack traces", e);
+		}
+	}
+
+	private MappingIndex loadIndex() throws IOException {
+		if (indexFile.isFile() && indexFile.lastModified() >= mappingFile.lastModified()) {
+			try {
+				return MappingIndex.read(indexFile);
+			} catch (IOException e) {
+				getLog().debug("Can't read " + indexFile + ", indexing " + mappingFile + " again: " + e);
+			}
+		}
+		long start = System.currentTimeMillis();
+		MappingIndex index = MappingIndex.parse(mappingFile);
+		File parent = indexFile.getAbsoluteFile().getParentFile();
+		if (parent.isDirectory() || parent.mkdirs()) {
+			index.write(indexFile);
+		}
+		getLog().info("Indexed " + index.classCount() + " classes of " + mappingFile + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+		return index;
+	}
+}
@@ -0,0 +1,253 @@
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers the inputs, configuration and outputs of the last ProGuard run of an execution, for {@code upToDateCheck}.
+ *
+ * <p>Every input and output is recorded with its size, modification time and content digest. A file whose size and
+ * modification time are unchanged is taken to be unchanged without reading it; one that was only touched, e.g.
+ * rebuilt with identical content, is compared by digest. A directory is compared the same way, with the total size
+ * and a digest of the sizes and modification times of the files below it.
+ *
+ * <p>The digest of an input jar covers the names and contents of its entries only, so an injar that was rebuilt
+ * with new entry timestamps, a different entry order or different compression still counts as unchanged.
+ */
+final class UpToDateState {
+
+    private static final String CONFIGURATION = "configuration";
+    private static final String INPUT = "input.";
+    private static final String OUTPUT = "output.";
+
+    private final File stateFile;
+    private Properties state;
+    /** The state of the last run, kept after {@link #invalidate()} to reuse the digests of unchanged files. */
+    private Properties previous;
+
+    UpToDateState(File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Returns a digest of the ProGuard arguments, the ProGuard jars and further {@code settings} that shape the outputs.
+     */
+    static String configurationKey(Collection<String> args, Collection<File> proguardJars, String settings) {
+        MessageDigest digest = Digests.sha256();
+        for (String arg : args) {
+            Digests.update(digest, arg);
+        }
+        for (File jar : proguardJars) {
+            Digests.update(digest, jar.getAbsolutePath() + ' ' + jar.length() + ' ' + jar.lastModified());
+        }
+        Digests.update(digest, settings);
+        return Digests.hex(digest.digest());
+    }
+
+    /**
+     * Returns whether the last run had {@code configurationKey} and {@code inputs}, and its {@code outputs} are still
+     * there, unchanged.
+     */
+    boolean isUpToDate(String configurationKey, Collection<File> inputs, Collection<File> outputs) throws IOException {
+        Properties recorded = read();
+        if (recorded == null || !configurationKey.equals(recorded.getProperty(CONFIGURATION))) {
+            return false;
+        }
+        int recordedInputs = 0;
+        for (String name : recorded.stringPropertyNames()) {
+            if (name.startsWith(INPUT)) {
+                recordedInputs++;
+            }
+        }
+        if (recordedInputs != inputs.size()) {
+            return false;
+        }
+        for (File input : inputs) {
+            if (!matches(input, recorded.getProperty(INPUT + input.getAbsolutePath()), true)) {
+                return false;
+            }
+        }
+        for (File output : outputs) {
+            if (!matches(output, recorded.getProperty(OUTPUT + output.getAbsolutePath()), false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether {@code file} is still the output the last run wrote there.
+     */
+    boolean isRecordedOutput(File file) throws IOException {
+        Properties recorded = read();
+        return recorded != null && matches(file, recorded.getProperty(OUTPUT + file.getAbsolutePath()), false);
+    }
+
+    /**
+     * Returns whether {@code file} is still the input the last run read there.
+     */
+    boolean isRecordedInput(File file) throws IOException {
+        Properties recorded = read();
+        return recorded != null && matches(file, recorded.getProperty(INPUT + file.getAbsolutePath()), true);
+    }
+
+    /**
+     * Forgets the last run, before a new run changes its outputs.
+     */
+    void invalidate() throws IOException {
+        previous = read();
+        state = null;
+        Files.deleteIfExists(stateFile.toPath());
+    }
+
+    /**
+     * Records a run with {@code configurationKey} from {@code inputs} to {@code outputs}.
+     */
+    void save(String configurationKey, Collection<File> inputs, Collection<File> outputs) throws IOException {
+        Properties recorded = new Properties();
+        recorded.setProperty(CONFIGURATION, configurationKey);
+        for (File input : inputs) {
+            String name = INPUT + input.getAbsolutePath();
+            recorded.setProperty(name, fingerprint(input, previous == null ? null : previous.getProperty(name), true));
+        }
+        for (File output : outputs) {
+            if (output.exists()) {
+                recorded.setProperty(OUTPUT + output.getAbsolutePath(), fingerprint(output, null, false));
+            }
+        }
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            recorded.store(writer, null);
+        }
+        Files.move(tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        state = recorded;
+    }
+
+    private Properties read() throws IOException {
+        if (state == null && stateFile.isFile()) {
+            Properties recorded = new Properties();
+            try (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+                recorded.load(reader);
+            }
+            state = recorded;
+        }
+        return state;
+    }
+
+    /**
+     * Returns {@code <size> <stamp> <digest>} of a file or directory, reusing the digest of the {@code recorded}
+     * fingerprint if size and stamp are unchanged.
+     */
+    private static String fingerprint(File file, String recorded, boolean input) throws IOException {
+        String metadata = metadata(file);
+        if (recorded != null && recorded.startsWith(metadata + ' ')) {
+            return recorded;
+        }
+        return metadata + ' ' + digest(file, input);
+    }
+
+    private static boolean matches(File file, String recorded, boolean input) throws IOException {
+        if (recorded == null || !file.exists()) {
+            return false;
+        }
+        int digestStart = recorded.lastIndexOf(' ');
+        if (digestStart < 0) {
+            return false;
+        }
+        String metadata = metadata(file);
+        if (recorded.startsWith(metadata + ' ')) {
+            return true;
+        }
+        if (!input && !metadata.substring(0, metadata.indexOf(' '))
+                .equals(recorded.substring(0, recorded.indexOf(' ')))) {
+            // a different size is different content, unlike for input jars, which are compared by their entries
+            return false;
+        }
+        return recorded.substring(digestStart + 1).equals(digest(file, input));
+    }
+
+    /**
+     * Returns the content digest of {@code file}: for an input jar that of the names and contents of its entries.
+     */
+    private static String digest(File file, boolean input) throws IOException {
+        if (!input || !file.isFile()) {
+            return Digests.sha256(file);
+        }
+        Map<String, String> entries = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (!entry.isDirectory()) {
+                    MessageDigest digest = Digests.sha256();
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        byte[] buffer = new byte[65536];
+                        int n;
+                        while ((n = in.read(buffer)) > 0) {
+                            digest.update(buffer, 0, n);
+                        }
+                    }
+                    entries.put(entry.getName(), Digests.hex(digest.digest()));
+                }
+            }
+        } catch (ZipException e) {
+            // not a jar, such as a configuration file
+            return Digests.sha256(file);
+        }
+        MessageDigest digest = Digests.sha256();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            Digests.update(digest, entry.getKey());
+            Digests.update(digest, entry.getValue());
+        }
+        return "entries:" + Digests.hex(digest.digest());
+    }
+
+    /**
+     * Returns {@code <size> <stamp>}: the stamp of a file is its modification time, that of a directory a digest of
+     * the names, sizes and modification times of the files below it, and its size their total size.
+     */
+    private static String metadata(File file) throws IOException {
+        if (!file.isDirectory()) {
+            return file.length() + " " + file.lastModified();
+        }
+        MessageDigest digest = Digests.sha256();
+        long size = addListing(digest, file, "");
+        return size + " " + Digests.hex(digest.digest());
+    }
+
+    private static long addListing(MessageDigest digest, File dir, String prefix) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + dir);
+        }
+        Arrays.sort(children);
+        long size = 0;
+        for (File child : children) {
+            String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                size += addListing(digest, child, name + "/");
+            } else {
+                Digests.update(digest, name + ' ' + child.length() + ' ' + child.lastModified());
+                size += child.length();
+            }
+        }
+        return size;
+    }
+}
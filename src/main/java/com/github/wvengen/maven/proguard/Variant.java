@@ -0,0 +1,44 @@
+/**
+ * Pyx4me framework
+ * Copyright (C) 2006-2008 pyx4j.com.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * 
+ * @author vlads
+ * @version $Id$
+ */
+package com.github.wvengen.maven.proguard;
+
+import java.io.File;
+
+/**
+ * An additional ProGuard run on the inputs of an execution, see {@code variants}.
+ */
+public class Variant {
+
+	/**
+	 * Classifier of the variant jar, also added to the names of its output files.
+	 */
+	protected String classifier;
+
+	/**
+	 * ProGuard options added to the options of the execution.
+	 */
+	protected String[] options;
+
+	/**
+	 * ProGuard configuration file included in addition to the one of the execution.
+	 */
+	protected File proguardInclude;
+}
@@ -0,0 +1,425 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Writes a jar from the entries of other jars without inflating and deflating them again: the compressed data of
+ * every entry is transferred as is. The first entry of any name wins, later ones are skipped.
+ *
+ * <p>Only plain zip files are supported. Zip64 archives, encrypted entries and outputs that would need zip64 raise an
+ * {@link UnsupportedZipException}, in which case the caller should merge in another way.
+ */
+final class ZipMerger implements Closeable {
+
+    /**
+     * Thrown for a zip feature this merger doesn't support.
+     */
+    static final class UnsupportedZipException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedZipException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private static final long MAX_U4 = 0xffffffffL;
+
+    private static final class Entry {
+        byte[] name;
+        int versionMadeBy;
+        int versionNeeded;
+        int flags;
+        int method;
+        int dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        int internalAttributes;
+        long externalAttributes;
+        long offset;
+    }
+
+    private final FileChannel out;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final Deflater deflater;
+    private final int level;
+    private long duplicates;
+    /** DOS time of all entries, or -1 to keep their own. */
+    private int fixedDosTime = -1;
+
+    ZipMerger(File output, int level) throws IOException {
+        out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        deflater = new Deflater(level, true);
+        this.level = level;
+    }
+
+    /**
+     * Writes the entries of {@code zip} to {@code output} in a form that only depends on their names and contents:
+     * sorted by name, with the manifest first as {@link java.util.jar.JarInputStream} expects, all with the time
+     * {@code time} in UTC, and all compressed again with {@code level}. The content of every entry is passed through
+     * {@code content}, with its name, to remove anything else that differs between builds.
+     */
+    static void normalize(File zip, File output, long time, int level, BiFunction<String, byte[], byte[]> content)
+            throws IOException {
+        try (ZipFile in = new ZipFile(zip);
+             ZipMerger merger = new ZipMerger(output, level)) {
+            merger.fixedDosTime = dosTime(time, TimeZone.getTimeZone("UTC"));
+            List<String> names = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> entries = in.entries(); entries.hasMoreElements(); ) {
+                names.add(entries.nextElement().getName());
+            }
+            Collections.sort(names, (a, b) -> {
+                int rank = Integer.compare(rank(a), rank(b));
+                return rank != 0 ? rank : a.compareTo(b);
+            });
+            for (String name : names) {
+                ZipEntry entry = in.getEntry(name);
+                byte[] bytes = new byte[0];
+                if (!entry.isDirectory()) {
+                    try (InputStream stream = in.getInputStream(entry)) {
+                        bytes = content.apply(name, IOUtils.toByteArray(stream));
+                    }
+                }
+                merger.addEntry(name, bytes, time);
+            }
+        }
+    }
+
+    private static int rank(String name) {
+        if (name.equals("META-INF/")) {
+            return 0;
+        }
+        return name.equalsIgnoreCase(JarFile.MANIFEST_NAME) ? 1 : 2;
+    }
+
+    /**
+     * Returns the number of entries skipped because an entry of the same name was added before.
+     */
+    long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Adds an entry with {@code content}, compressing it unless the level is {@link Deflater#NO_COMPRESSION}. Names
+     * ending in {@code /} are directories.
+     */
+    void addEntry(String name, byte[] content, long modified) throws IOException {
+        if (!names.add(name)) {
+            duplicates++;
+            return;
+        }
+        Entry entry = new Entry();
+        entry.name = name.getBytes(StandardCharsets.UTF_8);
+        entry.versionMadeBy = 20;
+        entry.versionNeeded = 20;
+        entry.flags = FLAG_UTF8;
+        entry.dosTime = fixedDosTime != -1 ? fixedDosTime : dosTime(modified, TimeZone.getDefault());
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.crc = crc.getValue();
+        entry.size = content.length;
+        byte[] data = content;
+        if (content.length > 0 && level != Deflater.NO_COMPRESSION) {
+            entry.method = DEFLATED;
+            data = deflate(content);
+        } else {
+            entry.method = STORED;
+            entry.versionNeeded = 10;
+        }
+        entry.compressedSize = data.length;
+        writeLocalHeader(entry);
+        writeFully(ByteBuffer.wrap(data));
+        entries.add(entry);
+    }
+
+    /**
+     * Adds the files below {@code dir} that {@code filter} accepts, by their relative path, with a directory entry for
+     * every directory.
+     */
+    void addDirectory(File dir, Predicate<String> filter) throws IOException {
+        addDirectory(dir, "", filter);
+    }
+
+    private void addDirectory(File dir, String prefix, Predicate<String> filter) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            throw new IOException("Can't list " + dir);
+        }
+        Arrays.sort(children);
+        for (File child : children) {
+            String name = prefix + child.getName();
+            if (child.isDirectory()) {
+                if (filter.test(name + "/")) {
+                    addEntry(name + "/", new byte[0], child.lastModified());
+                }
+                addDirectory(child, name + "/", filter);
+            } else if (filter.test(name)) {
+                addEntry(name, Files.readAllBytes(child.toPath()), child.lastModified());
+            }
+        }
+    }
+
+    /**
+     * Copies the entries of {@code zip} that {@code filter} accepts, in the order of its central directory.
+     */
+    void addZip(File zip, Predicate<String> filter) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(zip, "r");
+             FileChannel in = file.getChannel()) {
+            ByteBuffer centralDirectory = readCentralDirectory(in, zip);
+            while (centralDirectory.remaining() > 0) {
+                if (centralDirectory.getInt() != CENTRAL_HEADER) {
+                    throw new IOException("Corrupt central directory in " + zip);
+                }
+                Entry entry = new Entry();
+                entry.versionMadeBy = u2(centralDirectory);
+                entry.versionNeeded = u2(centralDirectory);
+                entry.flags = u2(centralDirectory);
+                entry.method = u2(centralDirectory);
+                entry.dosTime = centralDirectory.getInt();
+                entry.crc = u4(centralDirectory);
+                entry.compressedSize = u4(centralDirectory);
+                entry.size = u4(centralDirectory);
+                int nameLength = u2(centralDirectory);
+                int extraLength = u2(centralDirectory);
+                int commentLength = u2(centralDirectory);
+                u2(centralDirectory); // disk number start
+                entry.internalAttributes = u2(centralDirectory);
+                entry.externalAttributes = u4(centralDirectory);
+                long localOffset = u4(centralDirectory);
+                entry.name = new byte[nameLength];
+                centralDirectory.get(entry.name);
+                centralDirectory.position(centralDirectory.position() + extraLength + commentLength);
+
+                if (entry.compressedSize == MAX_U4 || entry.size == MAX_U4 || localOffset == MAX_U4) {
+                    throw new UnsupportedZipException("Zip64 entries in " + zip);
+                }
+                if ((entry.flags & FLAG_ENCRYPTED) != 0) {
+                    throw new UnsupportedZipException("Encrypted entries in " + zip);
+                }
+                // the sizes go into the local header, so no data descriptor follows the data
+                entry.flags &= ~FLAG_DATA_DESCRIPTOR;
+
+                String name = new String(entry.name, StandardCharsets.UTF_8);
+                if (!filter.test(name)) {
+                    continue;
+                }
+                if (!names.add(name)) {
+                    duplicates++;
+                    continue;
+                }
+                ByteBuffer localHeader = read(in, localOffset, 30);
+                if (localHeader.getInt(0) != LOCAL_HEADER) {
+                    throw new IOException("Corrupt local header of " + name + " in " + zip);
+                }
+                long dataOffset = localOffset + 30 + (localHeader.getShort(26) & 0xffff)
+                        + (localHeader.getShort(28) & 0xffff);
+
+                writeLocalHeader(entry);
+                long remaining = entry.compressedSize;
+                long position = dataOffset;
+                while (remaining > 0) {
+                    long transferred = in.transferTo(position, remaining, out);
+                    if (transferred <= 0) {
+                        throw new EOFException("Truncated entry " + name + " in " + zip);
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long centralDirectoryOffset = out.position();
+            for (Entry entry : entries) {
+                ByteBuffer header = buffer(46 + entry.name.length);
+                header.putInt(CENTRAL_HEADER);
+                header.putShort((short) entry.versionMadeBy);
+                header.putShort((short) entry.versionNeeded);
+                header.putShort((short) entry.flags);
+                header.putShort((short) entry.method);
+                header.putInt(entry.dosTime);
+                header.putInt((int) entry.crc);
+                header.putInt((int) entry.compressedSize);
+                header.putInt((int) entry.size);
+                header.putShort((short) entry.name.length);
+                header.putShort((short) 0); // extra field length
+                header.putShort((short) 0); // comment length
+                header.putShort((short) 0); // disk number start
+                header.putShort((short) entry.internalAttributes);
+                header.putInt((int) entry.externalAttributes);
+                header.putInt((int) entry.offset);
+                header.put(entry.name);
+                header.flip();
+                writeFully(header);
+            }
+            long centralDirectorySize = out.position() - centralDirectoryOffset;
+            if (entries.size() > 0xffff || centralDirectoryOffset > MAX_U4 || centralDirectorySize > MAX_U4) {
+                throw new UnsupportedZipException("Merged jar would need zip64");
+            }
+            ByteBuffer end = buffer(22);
+            end.putInt(END_OF_CENTRAL_DIRECTORY);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) entries.size());
+            end.putShort((short) entries.size());
+            end.putInt((int) centralDirectorySize);
+            end.putInt((int) centralDirectoryOffset);
+            end.putShort((short) 0);
+            end.flip();
+            writeFully(end);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        entry.offset = out.position();
+        if (entry.offset > MAX_U4) {
+            throw new UnsupportedZipException("Merged jar would need zip64");
+        }
+        ByteBuffer header = buffer(30 + entry.name.length);
+        header.putInt(LOCAL_HEADER);
+        header.putShort((short) entry.versionNeeded);
+        header.putShort((short) entry.flags);
+        header.putShort((short) entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.name.length);
+        header.putShort((short) 0); // extra field length
+        header.put(entry.name);
+        header.flip();
+        writeFully(header);
+    }
+
+    private byte[] deflate(byte[] content) {
+        deflater.reset();
+        deflater.setInput(content);
+        deflater.finish();
+        byte[] buffer = new byte[Math.max(64, content.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readCentralDirectory(FileChannel in, File zip) throws IOException {
+        long size = in.size();
+        int tailLength = (int) Math.min(size, 22 + 0xffff);
+        ByteBuffer tail = read(in, size - tailLength, tailLength);
+        int end = -1;
+        for (int i = tailLength - 22; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Not a zip file: " + zip);
+        }
+        if (end >= 20 && tail.getInt(end - 20) == ZIP64_LOCATOR) {
+            throw new UnsupportedZipException("Zip64 archive " + zip);
+        }
+        int entryCount = tail.getShort(end + 10) & 0xffff;
+        long centralDirectorySize = tail.getInt(end + 12) & MAX_U4;
+        long centralDirectoryOffset = tail.getInt(end + 16) & MAX_U4;
+        if (entryCount == 0xffff || centralDirectoryOffset == MAX_U4) {
+            throw new UnsupportedZipException("Zip64 archive " + zip);
+        }
+        return read(in, centralDirectoryOffset, (int) centralDirectorySize);
+    }
+
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = buffer(length);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer buffer(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int u2(ByteBuffer buffer) {
+        return buffer.getShort() & 0xffff;
+    }
+
+    private static long u4(ByteBuffer buffer) {
+        return buffer.getInt() & MAX_U4;
+    }
+
+    private static int dosTime(long time, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+}
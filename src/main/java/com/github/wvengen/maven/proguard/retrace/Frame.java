@@ -0,0 +1,37 @@
+package com.github.wvengen.maven.proguard.retrace;
+
+/**
+ * An original stack frame: the class, the method and, if known, the line.
+ */
+public final class Frame {
+
+    private final String className;
+    private final String methodName;
+    private final int lineNumber;
+
+    Frame(String className, String methodName, int lineNumber) {
+        this.className = className;
+        this.methodName = methodName;
+        this.lineNumber = lineNumber;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Returns the original line number, or 0 if it is unknown.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String toString() {
+        return className + "." + methodName + (lineNumber > 0 ? ":" + lineNumber : "");
+    }
+}
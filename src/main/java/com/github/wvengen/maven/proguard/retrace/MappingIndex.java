@@ -0,0 +1,409 @@
+package com.github.wvengen.maven.proguard.retrace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes and methods of a ProGuard mapping file, by obfuscated name, for decoding stack traces.
+ *
+ * <p>Every name is stored once, in a string table, and referred to by number; obfuscated method names like {@code a}
+ * are shared by almost all classes, so this keeps the index a fraction of the size of the mapping. The line ranges of
+ * the methods of a class are kept in plain {@code int} arrays per obfuscated method name, in mapping order, so the
+ * frames ProGuard inlined into a method come out innermost first. Fields are not indexed, as stack traces don't
+ * mention them.
+ *
+ * <p>An index is immutable, and can be used by several threads at once. It can be written to a compact binary form
+ * with {@link #write(OutputStream)}, which {@link #read(InputStream)} loads much faster than the mapping is parsed.
+ */
+public final class MappingIndex {
+
+    private static final int MAGIC = 0x50475254;
+    private static final int VERSION = 1;
+
+    /** Ints per method range: obfuscated start and end line, original class, name, start and end line. */
+    private static final int RANGE = 6;
+    private static final int OBFUSCATED_START = 0;
+    private static final int OBFUSCATED_END = 1;
+    private static final int ORIGINAL_CLASS = 2;
+    private static final int ORIGINAL_NAME = 3;
+    private static final int ORIGINAL_START = 4;
+    private static final int ORIGINAL_END = 5;
+
+    /** {@link #ORIGINAL_CLASS} of a method of the class itself, rather than one inlined from another class. */
+    private static final int SAME_CLASS = -1;
+
+    private static final class ClassMapping {
+        final int originalName;
+        final IntObjectMap<int[]> methods;
+
+        ClassMapping(int originalName, IntObjectMap<int[]> methods) {
+            this.originalName = originalName;
+            this.methods = methods;
+        }
+    }
+
+    private final String[] strings;
+    private final Map<String, ClassMapping> classes;
+    private final Map<String, Integer> methodNames;
+
+    private MappingIndex(String[] strings, Map<String, ClassMapping> classes) {
+        this.strings = strings;
+        this.classes = classes;
+        this.methodNames = new HashMap<>();
+        for (ClassMapping mapping : classes.values()) {
+            for (int name : mapping.methods.keys()) {
+                methodNames.put(strings[name], name);
+            }
+        }
+    }
+
+    /**
+     * Parses the mapping file written by ProGuard's {@code -printmapping}.
+     */
+    public static MappingIndex parse(File mappingFile) throws IOException {
+        try (Reader reader = Files.newBufferedReader(mappingFile.toPath(), StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses a mapping in the format of ProGuard's {@code -printmapping}.
+     */
+    public static MappingIndex parse(Reader mapping) throws IOException {
+        return new Parser().parse(mapping instanceof BufferedReader
+                ? (BufferedReader) mapping : new BufferedReader(mapping));
+    }
+
+    /**
+     * Loads an index written by {@link #write(File)}.
+     */
+    public static MappingIndex read(File indexFile) throws IOException {
+        try (InputStream in = new FileInputStream(indexFile)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Loads an index written by {@link #write(OutputStream)}.
+     */
+    public static MappingIndex read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 65536));
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not a mapping index of this version");
+        }
+        String[] strings = new String[data.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = data.readUTF();
+        }
+        int classCount = data.readInt();
+        Map<String, ClassMapping> classes = new HashMap<>(classCount * 4 / 3 + 1);
+        for (int i = 0; i < classCount; i++) {
+            String obfuscatedName = strings[data.readInt()];
+            int originalName = data.readInt();
+            int methodCount = data.readInt();
+            IntObjectMap<int[]> methods = new IntObjectMap<>(methodCount);
+            for (int j = 0; j < methodCount; j++) {
+                int name = data.readInt();
+                int[] ranges = new int[data.readInt()];
+                for (int k = 0; k < ranges.length; k++) {
+                    ranges[k] = data.readInt();
+                }
+                methods.put(name, ranges);
+            }
+            classes.put(obfuscatedName, new ClassMapping(originalName, methods));
+        }
+        return new MappingIndex(strings, classes);
+    }
+
+    /**
+     * Writes the index to {@code indexFile}, replacing it atomically.
+     */
+    public void write(File indexFile) throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            write(out);
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the index in its binary form.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(strings.length);
+        for (String string : strings) {
+            data.writeUTF(string);
+        }
+        Map<String, Integer> ids = new HashMap<>(strings.length * 4 / 3 + 1);
+        for (int i = 0; i < strings.length; i++) {
+            ids.put(strings[i], i);
+        }
+        data.writeInt(classes.size());
+        for (Map.Entry<String, ClassMapping> entry : classes.entrySet()) {
+            ClassMapping mapping = entry.getValue();
+            data.writeInt(ids.get(entry.getKey()));
+            data.writeInt(mapping.originalName);
+            data.writeInt(mapping.methods.size());
+            for (int name : mapping.methods.keys()) {
+                int[] ranges = mapping.methods.get(name);
+                data.writeInt(name);
+                data.writeInt(ranges.length);
+                for (int value : ranges) {
+                    data.writeInt(value);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Returns the number of classes in the index.
+     */
+    public int classCount() {
+        return classes.size();
+    }
+
+    /**
+     * Returns the original name of a class, or {@code null} if it is not in the mapping.
+     */
+    public String originalClassName(String obfuscatedClassName) {
+        ClassMapping mapping = classes.get(obfuscatedClassName);
+        return mapping == null ? null : strings[mapping.originalName];
+    }
+
+    /**
+     * Returns the original frames of a frame of the obfuscated program, innermost first. A frame of an obfuscated
+     * method ProGuard inlined other methods into has several original frames; a frame without line number, or whose
+     * line number is not in the mapping, has a frame for every original method with that obfuscated name. Returns an
+     * empty list if the class is not in the mapping.
+     *
+     * @param lineNumber the line number of the frame, or 0 if it has none
+     */
+    public List<Frame> frames(String obfuscatedClassName, String obfuscatedMethodName, int lineNumber) {
+        ClassMapping mapping = classes.get(obfuscatedClassName);
+        if (mapping == null) {
+            return Collections.emptyList();
+        }
+        String className = strings[mapping.originalName];
+        Integer name = methodNames.get(obfuscatedMethodName);
+        int[] ranges = name == null ? null : mapping.methods.get(name);
+        if (ranges == null) {
+            // not renamed
+            return Collections.singletonList(new Frame(className, obfuscatedMethodName, lineNumber));
+        }
+
+        List<Frame> frames = new ArrayList<>(2);
+        if (lineNumber > 0) {
+            for (int i = 0; i < ranges.length; i += RANGE) {
+                if (ranges[i + OBFUSCATED_END] > 0 && ranges[i + OBFUSCATED_START] <= lineNumber
+                        && lineNumber <= ranges[i + OBFUSCATED_END]) {
+                    frames.add(frame(className, ranges, i, originalLine(ranges, i, lineNumber)));
+                }
+            }
+        }
+        if (frames.isEmpty()) {
+            for (int i = 0; i < ranges.length; i += RANGE) {
+                if (!containsMethod(ranges, i)) {
+                    frames.add(frame(className, ranges, i, ranges[i + OBFUSCATED_END] > 0 ? 0 : lineNumber));
+                }
+            }
+        }
+        return frames;
+    }
+
+    private Frame frame(String className, int[] ranges, int i, int lineNumber) {
+        int originalClass = ranges[i + ORIGINAL_CLASS];
+        return new Frame(originalClass == SAME_CLASS ? className : strings[originalClass],
+                strings[ranges[i + ORIGINAL_NAME]], lineNumber);
+    }
+
+    private static int originalLine(int[] ranges, int i, int lineNumber) {
+        int start = ranges[i + ORIGINAL_START];
+        int end = ranges[i + ORIGINAL_END];
+        int line = start + lineNumber - ranges[i + OBFUSCATED_START];
+        // an inlined call site has a single original line for the whole obfuscated range
+        return end > start && line <= end ? line : start;
+    }
+
+    /**
+     * Returns whether an earlier range than the one at {@code i} has the same original method.
+     */
+    private static boolean containsMethod(int[] ranges, int i) {
+        for (int j = 0; j < i; j += RANGE) {
+            if (ranges[j + ORIGINAL_CLASS] == ranges[i + ORIGINAL_CLASS]
+                    && ranges[j + ORIGINAL_NAME] == ranges[i + ORIGINAL_NAME]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the lines of a mapping file:
+     *
+     * <pre>
+     * com.example.Foo -> a.a:
+     *     int count -> a
+     *     void &lt;init&gt;() -> &lt;init&gt;
+     *     12:15:void run(int):34:37 -> a
+     *     16:16:void com.example.Bar.helper():50:50 -> a
+     * </pre>
+     */
+    private static final class Parser {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, ClassMapping> classes = new HashMap<>();
+
+        private String obfuscatedClass;
+        private int originalClass;
+        private Map<Integer, int[]> methods;
+        private Map<Integer, Integer> methodSizes;
+
+        MappingIndex parse(BufferedReader reader) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                if (Character.isWhitespace(line.charAt(0))) {
+                    if (methods != null) {
+                        parseMember(line.trim());
+                    }
+                } else if (line.endsWith(":")) {
+                    parseClass(line);
+                }
+            }
+            endClass();
+            return new MappingIndex(strings.toArray(new String[0]), classes);
+        }
+
+        private void parseClass(String line) {
+            int arrow = line.indexOf(" -> ");
+            if (arrow < 0) {
+                return;
+            }
+            endClass();
+            obfuscatedClass = line.substring(arrow + 4, line.length() - 1).trim();
+            originalClass = id(line.substring(0, arrow).trim());
+            methods = new HashMap<>();
+            methodSizes = new HashMap<>();
+        }
+
+        private void parseMember(String line) {
+            int arrow = line.lastIndexOf(" -> ");
+            int open = line.indexOf('(');
+            if (arrow < 0 || open < 0 || open > arrow) {
+                // a field, or a line we don't know
+                return;
+            }
+            int close = line.indexOf(')', open);
+            if (close < 0 || close > arrow) {
+                return;
+            }
+            int obfuscatedStart = 0;
+            int obfuscatedEnd = 0;
+            int start = 0;
+            if (Character.isDigit(line.charAt(0))) {
+                int colon1 = line.indexOf(':');
+                int colon2 = line.indexOf(':', colon1 + 1);
+                if (colon1 < 0 || colon2 < 0 || colon2 > open) {
+                    return;
+                }
+                obfuscatedStart = parseInt(line, 0, colon1);
+                obfuscatedEnd = parseInt(line, colon1 + 1, colon2);
+                start = colon2 + 1;
+            }
+            int space = line.lastIndexOf(' ', open);
+            if (space < start) {
+                return;
+            }
+            String qualifiedName = line.substring(space + 1, open);
+            int dot = qualifiedName.lastIndexOf('.');
+
+            int originalStart = obfuscatedStart;
+            int originalEnd = obfuscatedEnd;
+            if (close + 1 < arrow && line.charAt(close + 1) == ':') {
+                int colon = line.indexOf(':', close + 2);
+                if (colon < 0 || colon > arrow) {
+                    originalStart = parseInt(line, close + 2, arrow);
+                    originalEnd = originalStart;
+                } else {
+                    originalStart = parseInt(line, close + 2, colon);
+                    originalEnd = parseInt(line, colon + 1, arrow);
+                }
+            }
+
+            int name = id(line.substring(arrow + 4).trim());
+            int[] ranges = methods.get(name);
+            int size = ranges == null ? 0 : methodSizes.get(name);
+            if (ranges == null || size + RANGE > ranges.length) {
+                ranges = ranges == null ? new int[RANGE] : Arrays.copyOf(ranges, ranges.length * 2);
+                methods.put(name, ranges);
+            }
+            ranges[size + OBFUSCATED_START] = obfuscatedStart;
+            ranges[size + OBFUSCATED_END] = obfuscatedEnd;
+            ranges[size + ORIGINAL_CLASS] = dot < 0 ? SAME_CLASS : id(qualifiedName.substring(0, dot));
+            ranges[size + ORIGINAL_NAME] = id(dot < 0 ? qualifiedName : qualifiedName.substring(dot + 1));
+            ranges[size + ORIGINAL_START] = originalStart;
+            ranges[size + ORIGINAL_END] = originalEnd;
+            methodSizes.put(name, size + RANGE);
+        }
+
+        private void endClass() {
+            if (methods == null) {
+                return;
+            }
+            IntObjectMap<int[]> classMethods = new IntObjectMap<>(methods.size());
+            for (Map.Entry<Integer, int[]> method : methods.entrySet()) {
+                int size = methodSizes.get(method.getKey());
+                int[] ranges = method.getValue();
+                classMethods.put(method.getKey(), size == ranges.length ? ranges : Arrays.copyOf(ranges, size));
+            }
+            // the binary form refers to the obfuscated name through the string table too
+            id(obfuscatedClass);
+            classes.put(obfuscatedClass, new ClassMapping(originalClass, classMethods));
+            methods = null;
+        }
+
+        private int id(String string) {
+            Integer id = ids.get(string);
+            if (id == null) {
+                id = strings.size();
+                strings.add(string);
+                ids.put(string, id);
+            }
+            return id;
+        }
+
+        private static int parseInt(String line, int start, int end) {
+            try {
+                return Integer.parseInt(line.substring(start, end).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
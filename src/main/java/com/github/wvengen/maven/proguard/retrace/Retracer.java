@@ -0,0 +1,236 @@
+package com.github.wvengen.maven.proguard.retrace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decodes obfuscated stack traces with a {@link MappingIndex}.
+ *
+ * <p>Lines are decoded one at a time and independently of each other, so traces of any length stream through in
+ * constant memory. Frame lines, {@code at a.b.c(SourceFile:12)}, become one line per original frame; exception lines,
+ * {@code a.b: message} with an optional {@code Caused by: } or {@code Suppressed: } prefix, get the original class
+ * name. Other lines, and anything the mapping doesn't know, are copied unchanged. Lines are parsed by hand rather than
+ * with the regular expressions of ProGuard's ReTrace, which dominate its running time on large batches.
+ */
+public final class Retracer {
+
+    /** Lines per task of {@link #retrace(BufferedReader, Writer, int)}. */
+    private static final int CHUNK_LINES = 4096;
+
+    private static final String[] EXCEPTION_PREFIXES = { "Caused by: ", "Suppressed: " };
+
+    private final MappingIndex index;
+
+    public Retracer(MappingIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Decodes the lines of {@code in} to {@code out}.
+     */
+    public void retrace(BufferedReader in, Writer out) throws IOException {
+        StringBuilder decoded = new StringBuilder(256);
+        String line;
+        while ((line = in.readLine()) != null) {
+            decoded.setLength(0);
+            retraceLine(line, decoded);
+            out.append(decoded);
+        }
+        out.flush();
+    }
+
+    /**
+     * Decodes the lines of {@code in} to {@code out} on {@code threads} threads, keeping their order.
+     */
+    public void retrace(BufferedReader in, Writer out, int threads) throws IOException {
+        if (threads <= 1) {
+            retrace(in, out);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "retrace");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // bounds the decoded chunks waiting to be written
+        Deque<Future<CharSequence>> pending = new ArrayDeque<>();
+        try {
+            List<String> chunk;
+            while (!(chunk = readChunk(in)).isEmpty()) {
+                final List<String> lines = chunk;
+                pending.addLast(executor.submit(new Callable<CharSequence>() {
+                    @Override
+                    public CharSequence call() {
+                        StringBuilder decoded = new StringBuilder(lines.size() * 80);
+                        for (String line : lines) {
+                            retraceLine(line, decoded);
+                        }
+                        return decoded;
+                    }
+                }));
+                if (pending.size() >= threads * 2) {
+                    out.append(take(pending));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.append(take(pending));
+            }
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the decoded form of {@code line}, without line terminator after the last line.
+     */
+    public String retrace(String line) {
+        StringBuilder decoded = new StringBuilder(line.length() + 32);
+        retraceLine(line, decoded);
+        decoded.setLength(decoded.length() - 1);
+        return decoded.toString();
+    }
+
+    /**
+     * Appends the decoded lines of {@code line} to {@code out}, each terminated by a newline.
+     */
+    void retraceLine(String line, StringBuilder out) {
+        if (!retraceFrame(line, out) && !retraceException(line, out)) {
+            out.append(line).append('\n');
+        }
+    }
+
+    private boolean retraceFrame(String line, StringBuilder out) {
+        int at = 0;
+        while (at < line.length() && Character.isWhitespace(line.charAt(at))) {
+            at++;
+        }
+        if (!line.startsWith("at ", at)) {
+            return false;
+        }
+        int open = line.indexOf('(', at);
+        int close = line.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return false;
+        }
+        int nameStart = at + 3;
+        // Java 9 frames can name a class loader or module first: app//a.b.c(...)
+        int slash = line.lastIndexOf('/', open);
+        if (slash >= nameStart) {
+            nameStart = slash + 1;
+        }
+        int dot = line.lastIndexOf('.', open);
+        if (dot <= nameStart) {
+            return false;
+        }
+        String className = line.substring(nameStart, dot);
+        String methodName = line.substring(dot + 1, open);
+
+        String source = line.substring(open + 1, close);
+        int lineNumber = 0;
+        int colon = source.lastIndexOf(':');
+        if (colon >= 0) {
+            lineNumber = parseLineNumber(source, colon + 1);
+            if (lineNumber > 0) {
+                source = source.substring(0, colon);
+            }
+        }
+
+        List<Frame> frames = index.frames(className, methodName, lineNumber);
+        if (frames.isEmpty()) {
+            return false;
+        }
+        for (Frame frame : frames) {
+            out.append(line, 0, nameStart)
+                    .append(frame.getClassName()).append('.').append(frame.getMethodName())
+                    .append('(').append(source);
+            if (frame.getLineNumber() > 0) {
+                out.append(':').append(frame.getLineNumber());
+            }
+            out.append(line, close, line.length()).append('\n');
+        }
+        return true;
+    }
+
+    private boolean retraceException(String line, StringBuilder out) {
+        int start = 0;
+        while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        for (String prefix : EXCEPTION_PREFIXES) {
+            if (line.startsWith(prefix, start)) {
+                start += prefix.length();
+                break;
+            }
+        }
+        if (line.startsWith("Exception in thread \"", start)) {
+            int quote = line.indexOf("\" ", start + 21);
+            if (quote < 0) {
+                return false;
+            }
+            start = quote + 2;
+        }
+        int end = start;
+        while (end < line.length() && line.charAt(end) != ':' && !Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+        if (end == start) {
+            return false;
+        }
+        String className = index.originalClassName(line.substring(start, end));
+        if (className == null) {
+            return false;
+        }
+        out.append(line, 0, start).append(className).append(line, end, line.length()).append('\n');
+        return true;
+    }
+
+    private static int parseLineNumber(String source, int start) {
+        int value = 0;
+        if (start >= source.length()) {
+            return 0;
+        }
+        for (int i = start; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c < '0' || c > '9' || value > Integer.MAX_VALUE / 10 - 1) {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static List<String> readChunk(BufferedReader in) throws IOException {
+        List<String> lines = new ArrayList<>(CHUNK_LINES);
+        String line;
+        while (lines.size() < CHUNK_LINES && (line = in.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static CharSequence take(Deque<Future<CharSequence>> pending) throws IOException {
+        try {
+            return pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding stack traces", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Can't decode stack traces", e.getCause());
+        }
+    }
+}
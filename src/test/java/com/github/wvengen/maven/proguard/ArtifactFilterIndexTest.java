@@ -0,0 +1,68 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ArtifactFilterIndexTest {
+
+    private static final String[] GROUP_IDS = {"com.mahifx", "com.mahifx.sub", "com.ma*", "com.mahifx.*", "*", "*.mahifx",
+            "com.*.sub", "org.other", "", null};
+
+    private static final String[] ARTIFACT_IDS = {"libA", "lib*", "*", "li.*", "*A", "libB-utils", "", null};
+
+    private static final String[] CLASSIFIERS = {null, "tests"};
+
+    @Test
+    public void matchesLikeEachFilter() {
+        List<ArtifactFilter> filters = new ArrayList<>();
+        for (String groupId : GROUP_IDS) {
+            for (String artifactId : ARTIFACT_IDS) {
+                for (String classifier : CLASSIFIERS) {
+                    ArtifactFilter filter = new ArtifactFilter();
+                    filter.groupId = groupId;
+                    filter.artifactId = artifactId;
+                    filter.classifier = classifier;
+                    filters.add(filter);
+                }
+            }
+        }
+        ArtifactFilterIndex<ArtifactFilter> index = new ArtifactFilterIndex<>(filters);
+
+        for (String groupId : Arrays.asList("com.mahifx", "com.mahifx.sub", "com.mahifx.sub.deeper", "com.maven",
+                "org.other", "org.mahifx")) {
+            for (String artifactId : Arrays.asList("libA", "libB", "li.b", "liTb", "libB-utils", "other")) {
+                for (String classifier : CLASSIFIERS) {
+                    DefaultArtifact artifact = new DefaultArtifact(groupId, artifactId,
+                            VersionRange.createFromVersion("1.0.0"), "compile", "jar", classifier,
+                            new DefaultArtifactHandler());
+                    List<ArtifactFilter> expected = new ArrayList<>();
+                    for (ArtifactFilter filter : filters) {
+                        if (filter.match(artifact)) {
+                            expected.add(filter);
+                        }
+                    }
+                    Assert.assertEquals(artifact.toString(), expected, index.match(artifact));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recompilesChangedFilter() {
+        ArtifactFilter filter = new ArtifactFilter();
+        filter.groupId = "com.mahifx";
+        filter.artifactId = "libA";
+        DefaultArtifact artifact = new DefaultArtifact("com.mahifx", "libB", VersionRange.createFromVersion("1.0.0"),
+                "compile", "jar", null, new DefaultArtifactHandler());
+        Assert.assertFalse(filter.match(artifact));
+        filter.artifactId = "lib*";
+        Assert.assertTrue(filter.match(artifact));
+    }
+}
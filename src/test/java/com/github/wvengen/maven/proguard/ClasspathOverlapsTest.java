@@ -0,0 +1,81 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClasspathOverlapsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void dropsLibrariesCoveredByEarlierInputs() throws IOException {
+        File program = jar("program.jar", "app/Main.class", "lib/Util.class");
+        File shaded = jar("shaded.jar", "lib/Util.class");
+        File api = jar("api.jar", "api/Api.class", "api/Spi.class");
+        File apiCopy = jar("api-copy.jar", "api/Api.class", "META-INF/versions/9/api/Api.class", "module-info.class");
+        File partial = jar("partial.jar", "api/Api.class", "other/Other.class");
+
+        ClasspathOverlaps.Result result = new ClasspathOverlaps(2).analyze(Arrays.asList(
+                new ClasspathOverlaps.Input(program, false, true),
+                new ClasspathOverlaps.Input(shaded, true, true),
+                new ClasspathOverlaps.Input(api, true, true),
+                new ClasspathOverlaps.Input(apiCopy, true, true),
+                new ClasspathOverlaps.Input(partial, true, true)));
+
+        Assert.assertEquals(Arrays.asList(shaded, apiCopy), result.redundantLibraries);
+        Assert.assertEquals(3, result.duplicateClasses);
+        Assert.assertEquals(Integer.valueOf(1), result.overlaps.get("program.jar and shaded.jar"));
+        Assert.assertEquals(Integer.valueOf(1), result.overlaps.get("api.jar and partial.jar"));
+    }
+
+    @Test
+    public void filteredInjarsDontCover() throws IOException {
+        File program = jar("program.jar", "lib/Util.class");
+        File library = jar("library.jar", "lib/Util.class");
+
+        ClasspathOverlaps.Result result = new ClasspathOverlaps(1).analyze(Arrays.asList(
+                new ClasspathOverlaps.Input(program, false, false),
+                new ClasspathOverlaps.Input(library, true, true)));
+
+        Assert.assertEquals(Collections.emptyList(), result.redundantLibraries);
+        Assert.assertEquals(1, result.duplicateClasses);
+    }
+
+    @Test
+    public void readsDirectoriesAndIgnoresOtherFiles() throws IOException {
+        File classes = folder.newFolder("classes");
+        new File(classes, "lib").mkdirs();
+        new File(classes, "lib/Util.class").createNewFile();
+        File notAJar = folder.newFile("notes.txt");
+        File library = jar("library.jar", "lib/Util.class");
+
+        ClasspathOverlaps.Result result = new ClasspathOverlaps(0).analyze(Arrays.asList(
+                new ClasspathOverlaps.Input(classes, false, true),
+                new ClasspathOverlaps.Input(notAJar, true, true),
+                new ClasspathOverlaps.Input(library, true, true)));
+
+        Assert.assertEquals(Collections.singletonList(library), result.redundantLibraries);
+    }
+
+    private File jar(String name, String... entries) throws IOException {
+        File jar = folder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ConfigurationFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesFilesBelowTheBaseDirectoryRelatively() {
+        File baseDir = new File(folder.getRoot(), "project");
+        File target = new File(baseDir, "target");
+        List<String> args = Arrays.asList(
+                "-injars", "'" + new File(target, "classes") + "'(!META-INF/maven/**)",
+                "-outjars", "'" + new File(target, "app-small.jar") + "'",
+                "-libraryjars", "'" + new File(folder.getRoot(), "repository/lib.jar") + "'",
+                "-libraryjars", "'<java.home>/jmods/java.base.jmod'(!**.jar;!module-info.class)",
+                "-include", "'proguard.conf'",
+                "-dontobfuscate");
+
+        String text = ConfigurationFile.text(args, target, baseDir);
+
+        Assert.assertEquals("\n-injars 'classes'(!META-INF/maven/**)"
+                + "\n-outjars 'app-small.jar'"
+                + "\n-libraryjars '" + new File(folder.getRoot(), "repository/lib.jar") + "'"
+                + "\n-libraryjars '<java.home>/jmods/java.base.jmod'(!**.jar;!module-info.class)"
+                + "\n-include '.." + File.separator + "proguard.conf'"
+                + "\n-dontobfuscate", text);
+    }
+
+    @Test
+    public void writesOnlyChangedContent() throws IOException {
+        File file = new File(folder.getRoot(), "generated-proguard.conf");
+
+        Assert.assertTrue(ConfigurationFile.writeIfChanged(file, "-dontobfuscate"));
+        Assert.assertTrue(file.setLastModified(1000000000000L));
+        Assert.assertFalse(ConfigurationFile.writeIfChanged(file, "-dontobfuscate"));
+        Assert.assertEquals(1000000000000L, file.lastModified());
+        Assert.assertTrue(ConfigurationFile.writeIfChanged(file, "-dontshrink"));
+    }
+
+    @Test
+    public void hashCoversIncludedFiles() throws IOException {
+        File include = folder.newFile("proguard.conf");
+        String hash = ConfigurationFile.hash("-include 'proguard.conf'", Collections.singletonList(include));
+
+        Assert.assertEquals(hash, ConfigurationFile.hash("-include 'proguard.conf'", Collections.singletonList(include)));
+        ConfigurationFile.writeIfChanged(include, "-keep class *");
+        Assert.assertNotEquals(hash, ConfigurationFile.hash("-include 'proguard.conf'",
+                Collections.singletonList(include)));
+    }
+}
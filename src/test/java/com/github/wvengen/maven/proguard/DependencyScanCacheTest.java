@@ -0,0 +1,80 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class DependencyScanCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sharedWithinABuild() {
+        Object build = new ArrayList<Object>();
+        DependencyScanCache cache = DependencyScanCache.forBuild(build);
+
+        Assert.assertSame(cache, DependencyScanCache.forBuild(build));
+        Assert.assertNotSame(cache, DependencyScanCache.forBuild(new ArrayList<Object>()));
+        Assert.assertNotSame(DependencyScanCache.forBuild(null), DependencyScanCache.forBuild(null));
+    }
+
+    @Test
+    public void sharesVerdictsOfEqualFilters() {
+        DependencyScanCache cache = DependencyScanCache.forBuild(null);
+        DependencyScanCache.FilterVerdicts verdicts = cache.filterVerdicts(filters("com.example", "lib*"));
+
+        Assert.assertSame(verdicts, cache.filterVerdicts(filters("com.example", "lib*")));
+        Assert.assertNotSame(verdicts, cache.filterVerdicts(filters("com.example", "*")));
+
+        BitSet expected = new BitSet();
+        expected.set(1);
+        Assert.assertEquals(expected, verdicts.match(artifact("com.example", "libA")));
+        Assert.assertEquals(new BitSet(), verdicts.match(artifact("org.other", "libA")));
+    }
+
+    @Test
+    public void remembersOnlyExistingFiles() throws IOException {
+        DependencyScanCache cache = DependencyScanCache.forBuild(null);
+        DefaultArtifact artifact = artifact("com.example", "libA");
+        File file = new File(folder.getRoot(), "libA-1.0.0.jar");
+        artifact.setFile(file);
+
+        Assert.assertFalse(cache.exists(artifact));
+        Assert.assertTrue(file.createNewFile());
+        Assert.assertTrue(cache.exists(artifact));
+        Assert.assertTrue(file.delete());
+        Assert.assertTrue(cache.exists(artifact));
+    }
+
+    private static List<ArtifactFilter> filters(String... groupAndArtifactIds) {
+        List<ArtifactFilter> filters = new ArrayList<>();
+        filters.add(filter("org.unrelated", "*"));
+        for (int i = 0; i < groupAndArtifactIds.length; i += 2) {
+            filters.add(filter(groupAndArtifactIds[i], groupAndArtifactIds[i + 1]));
+        }
+        return filters;
+    }
+
+    private static ArtifactFilter filter(String groupId, String artifactId) {
+        ArtifactFilter filter = new ArtifactFilter();
+        filter.groupId = groupId;
+        filter.artifactId = artifactId;
+        return filter;
+    }
+
+    private static DefaultArtifact artifact(String groupId, String artifactId) {
+        return new DefaultArtifact(groupId, artifactId, VersionRange.createFromVersion("1.0.0"), "compile", "jar", null,
+                new DefaultArtifactHandler());
+    }
+}
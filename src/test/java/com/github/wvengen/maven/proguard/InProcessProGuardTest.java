@@ -0,0 +1,37 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+
+public class InProcessProGuardTest {
+
+    @Test
+    public void consoleStreamsArePutBackAfterARun() {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        // ProGuard can't be loaded from this class loader, so the run fails right away
+        ClassLoader loader = new URLClassLoader(new URL[0], ClassLoader.getSystemClassLoader().getParent());
+        try {
+            InProcessProGuard.run(loader, Collections.<String>emptyList(), null, new ProGuardWorkerClient.Output() {
+                @Override
+                public void out(String line) {
+                }
+
+                @Override
+                public void err(String line) {
+                }
+            });
+            Assert.fail();
+        } catch (MojoExecutionException expected) {
+        }
+
+        Assert.assertSame(out, System.out);
+        Assert.assertSame(err, System.err);
+    }
+}
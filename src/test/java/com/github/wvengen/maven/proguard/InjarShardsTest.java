@@ -0,0 +1,84 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class InjarShardsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void injarsReferringToEachOtherShareAShard() throws IOException {
+        File atomic = jar("atomic.jar", "java/util/concurrent/atomic/AtomicInteger");
+        File zip = jar("zip.jar", "java/util/zip/CRC32");
+        File lang = jar("lang.jar", "java/lang/Number");
+
+        List<List<Integer>> shards = InjarShards.shards(Arrays.asList(atomic, zip, lang));
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList(0, 2), Collections.singletonList(1)), shards);
+    }
+
+    @Test
+    public void injarsWithTheSamePackageShareAShard() throws IOException {
+        File first = jar("first.jar", "java/util/zip/CRC32");
+        File second = jar("second.jar", "java/util/zip/Adler32");
+
+        Assert.assertEquals(1, InjarShards.shards(Arrays.asList(first, second)).size());
+    }
+
+    @Test
+    public void configurationsThatCantBeSharded() throws IOException {
+        List<String> args = Arrays.asList("-injars", "a.jar", "-outjars", "out.jar", "-keeppackagenames");
+        Assert.assertNull(InjarShards.unsupportedReason(args, folder.getRoot()));
+        Assert.assertNotNull(InjarShards.unsupportedReason(args.subList(0, 4), folder.getRoot()));
+        Assert.assertNull(InjarShards.unsupportedReason(
+                Arrays.asList("-injars", "a.jar", "-outjars", "out.jar", "-dontobfuscate"), folder.getRoot()));
+
+        File include = new File(folder.getRoot(), "proguard.conf");
+        Files.write(include.toPath(), "# shrink\n-repackageclasses ''\n".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("the configuration uses -repackageclasses", InjarShards.unsupportedReason(
+                Arrays.asList("-injars", "a.jar", "-outjars", "out.jar", "-dontobfuscate", "-include", "proguard.conf"),
+                folder.getRoot()));
+    }
+
+    @Test
+    public void optionsWrittenOnOneLineAreChecked() throws IOException {
+        List<String> args = Arrays.asList("-injars", "a.jar", "-outjars", "out.jar", "-keeppackagenames",
+                "-repackageclasses ''");
+        Assert.assertEquals("the configuration uses -repackageclasses",
+                InjarShards.unsupportedReason(args, folder.getRoot()));
+        Assert.assertEquals("the configuration uses -printusage", InjarShards.unsupportedReason(
+                Arrays.asList("-injars", "a.jar", "-outjars", "out.jar", "-dontobfuscate -printusage usage.txt"),
+                folder.getRoot()));
+    }
+
+    private File jar(String name, String... classNames) throws IOException {
+        File jar = folder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String className : classNames) {
+                out.putNextEntry(new ZipEntry(className + ".class"));
+                try (InputStream in = Object.class.getResourceAsStream("/" + className + ".class")) {
+                    IOUtils.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class JvmOptionsTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long GB = 1024 * MB;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void estimateIsAtLeastTheMinimumHeap() throws IOException {
+        List<String> args = Collections.emptyList();
+        Assert.assertEquals("256m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), true, 64 * GB));
+        Assert.assertEquals("256m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), false, 64 * GB));
+    }
+
+    @Test
+    public void estimateIsRounded() throws IOException {
+        // 128 MB base heap and five times the 60 MB of classes make 428 MB
+        File classes = folder.newFolder("classes");
+        sparseFile(new File(classes, "A.class"), 60 * MB);
+        List<String> args = Arrays.asList(ProGuardArgs.INJARS, "classes");
+
+        Assert.assertEquals("512m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), true, 64 * GB));
+        Assert.assertEquals("448m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), false, 64 * GB));
+    }
+
+    @Test
+    public void estimateIsCappedByPhysicalMemory() throws IOException {
+        File classes = folder.newFolder("classes");
+        sparseFile(new File(classes, "A.class"), 200 * MB);
+        List<String> args = Arrays.asList(ProGuardArgs.INJARS, "classes");
+
+        Assert.assertEquals("768m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), true, GB));
+        Assert.assertEquals("2048m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), true, -1));
+    }
+
+    @Test
+    public void jarsInDirectoriesCountWithTheirEntries() throws IOException {
+        // like the library jars staged in a directory; the 30 MB class compresses to almost nothing
+        File libs = folder.newFolder("libs");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(new File(libs, "lib.jar")))) {
+            out.putNextEntry(new ZipEntry("A.class"));
+            byte[] zeros = new byte[(int) MB];
+            for (int i = 0; i < 30; i++) {
+                out.write(zeros);
+            }
+            out.closeEntry();
+        }
+        List<String> args = Arrays.asList(ProGuardArgs.INJARS, "libs");
+
+        Assert.assertEquals("320m", JvmOptions.estimateMaxMemory(args, folder.getRoot(), false, 64 * GB));
+    }
+
+    @Test
+    public void parsesMemorySettings() {
+        Assert.assertEquals(512 * 1024, JvmOptions.parseMemory("512k"));
+        Assert.assertEquals(512 * MB, JvmOptions.parseMemory("512m"));
+        Assert.assertEquals(2 * GB, JvmOptions.parseMemory("2G"));
+        Assert.assertEquals(1024 * GB, JvmOptions.parseMemory("1t"));
+        Assert.assertEquals(MB, JvmOptions.parseMemory("1048576"));
+        Assert.assertEquals(0, JvmOptions.parseMemory(null));
+        Assert.assertEquals(0, JvmOptions.parseMemory(""));
+        Assert.assertEquals(0, JvmOptions.parseMemory("m"));
+        Assert.assertEquals(0, JvmOptions.parseMemory("lots"));
+    }
+
+    private static void sparseFile(File file, long length) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(length);
+        }
+    }
+}
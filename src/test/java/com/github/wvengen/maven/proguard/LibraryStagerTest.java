@@ -0,0 +1,77 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class LibraryStagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stagesFilesAndDirectories() throws IOException {
+        File jar = write("libs/a.jar", "jar");
+        File classes = write("module/classes/com/example/A.class", "class").getParentFile().getParentFile().getParentFile();
+        File stagingDir = new File(folder.getRoot(), "staging");
+
+        LibraryStager.Result result = new LibraryStager(stagingDir, LibraryStager.Strategy.HARDLINK, 2)
+                .stage(Arrays.asList(classes, jar), false);
+
+        Assert.assertFalse(result.reused);
+        Assert.assertEquals(new File(stagingDir, "0"), result.commonDir);
+        Assert.assertEquals(Arrays.asList(new File(stagingDir, "1")), result.directories);
+        Assert.assertEquals("jar", read(new File(stagingDir, "0/a.jar")));
+        Assert.assertEquals("class", read(new File(stagingDir, "1/com/example/A.class")));
+        Assert.assertEquals(8, result.bytesCopied.get() + result.bytesLinked.get());
+    }
+
+    @Test
+    public void reflinksOrFallsBackToCopies() throws IOException {
+        File jar = write("libs/a.jar", "jar");
+        File classes = write("module/classes/com/example/A.class", "class").getParentFile().getParentFile().getParentFile();
+        File stagingDir = new File(folder.getRoot(), "staging");
+
+        // clones where the file system supports them, copies elsewhere
+        LibraryStager.Result result = new LibraryStager(stagingDir, LibraryStager.Strategy.REFLINK, 2)
+                .stage(Arrays.asList(classes, jar), false);
+
+        Assert.assertEquals("jar", read(new File(stagingDir, "0/a.jar")));
+        Assert.assertEquals("class", read(new File(stagingDir, "1/com/example/A.class")));
+        Assert.assertEquals(8, result.bytesCopied.get() + result.bytesLinked.get());
+    }
+
+    @Test
+    public void reusesUnchangedStagingDirectory() throws IOException {
+        File jar = write("libs/a.jar", "jar");
+        File stagingDir = new File(folder.getRoot(), "staging");
+        List<File> libraries = Arrays.asList(jar);
+        LibraryStager stager = new LibraryStager(stagingDir, LibraryStager.Strategy.COPY, 1);
+
+        Assert.assertFalse(stager.stage(libraries, true).reused);
+        Assert.assertTrue(stager.stage(libraries, true).reused);
+
+        write("libs/a.jar", "changed jar");
+        Assert.assertFalse(stager.stage(libraries, true).reused);
+        Assert.assertEquals("changed jar", read(new File(stagingDir, "0/a.jar")));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
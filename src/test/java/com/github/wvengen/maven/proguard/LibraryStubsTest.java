@@ -0,0 +1,59 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class LibraryStubsTest {
+
+    private static final String CLASS_NAME = "com/github/wvengen/maven/proguard/ArtifactFilter.class";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stubKeepsStrippedClassesOnly() throws IOException {
+        byte[] classFile;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(CLASS_NAME)) {
+            classFile = IOUtils.toByteArray(in);
+        }
+        File library = folder.newFile("library.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(library))) {
+            out.putNextEntry(new ZipEntry(CLASS_NAME));
+            out.write(classFile);
+            out.putNextEntry(new ZipEntry("config.properties"));
+            out.write("a=b".getBytes(StandardCharsets.UTF_8));
+        }
+
+        LibraryStubs stubs = new LibraryStubs(folder.newFolder("stubs"));
+        File stub = stubs.stub(library);
+        Assert.assertEquals("library.jar", stub.getName());
+        try (ZipFile zip = new ZipFile(stub)) {
+            Assert.assertNull(zip.getEntry("config.properties"));
+            byte[] stubbed = IOUtils.toByteArray(zip.getInputStream(zip.getEntry(CLASS_NAME)));
+            Assert.assertTrue(stubbed.length < classFile.length);
+            Assert.assertArrayEquals(stubbed, ClassFileStripper.strip(stubbed));
+        }
+
+        Assert.assertEquals(stub, stubs.stub(library));
+        Assert.assertEquals(1, stubs.created.get());
+        Assert.assertEquals(1, stubs.reused.get());
+    }
+
+    @Test
+    public void directoriesAreNotStubbed() throws IOException {
+        File classes = folder.newFolder("classes");
+        Assert.assertSame(classes, new LibraryStubs(folder.newFolder("stubs")).stub(classes));
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class MappingStoreTest {
+
+    private static final String A = "com.example.A -> a:\n    int count -> a\n    void run() -> b\n";
+    private static final String A2 = "com.example.A -> a:\n    int count -> b\n";
+    private static final String B = "com.example.B -> b:\n    1:3:void main(java.lang.String[]) -> main\n";
+    private static final String C = "com.example.C -> c:\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replacesAddsAndCompacts() throws IOException {
+        File store = write("store.txt", A + B);
+        MappingStore.Result result = new MappingStore(store).merge(write("map.txt", A2 + C),
+                new HashSet<>(Arrays.asList("com.example.A", "com.example.C")));
+
+        Assert.assertEquals(A2 + C, read(store));
+        Assert.assertEquals(2, result.classes);
+        Assert.assertEquals(1, result.changed);
+        Assert.assertEquals(1, result.added);
+        Assert.assertEquals(1, result.removed);
+    }
+
+    @Test
+    public void keepsClassesStillInProgram() throws IOException {
+        File store = write("store.txt", A + B);
+        // B was shrunk away, but is still an input, so its mapping stays for when it comes back
+        new MappingStore(store).merge(write("map.txt", A2),
+                new HashSet<>(Arrays.asList("com.example.A", "com.example.B")));
+
+        Assert.assertEquals(A2 + B, read(store));
+    }
+
+    @Test
+    public void compactsAppendedStore() throws IOException {
+        File store = write("store.txt", "# comment\n" + A + B + A2);
+        new MappingStore(store).merge(write("map.txt", C), null);
+
+        Assert.assertEquals("# comment\n" + B + A2 + C, read(store));
+    }
+
+    @Test
+    public void mergesStoresLargerThanTheReadBuffer() throws IOException {
+        StringBuilder classes = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            classes.append("com.example.Class").append(i).append(" -> a").append(i).append(":\n    int count -> a\n");
+        }
+        File store = write("store.txt", classes + A);
+        MappingStore.Result result = new MappingStore(store).merge(write("map.txt", A2 + "com.example.D -> d:"), null);
+
+        Assert.assertEquals(classes + A2 + "com.example.D -> d:\n", read(store));
+        Assert.assertEquals(10002, result.classes);
+        Assert.assertEquals(1, result.changed);
+        Assert.assertEquals(1, result.added);
+        Assert.assertFalse(new File(folder.getRoot(), "store.txt.tmp").exists());
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.tools.ant.Project;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class MavenloggingBinderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void logsInOrderAndSummarizesSimilarLines() throws IOException {
+        RecordingLog log = new RecordingLog();
+        File outputFile = folder.newFile("proguard.log");
+        MavenloggingBinder binder = new MavenloggingBinder(log, 100, 2, outputFile);
+        binder.setMessageOutputLevel(Project.MSG_INFO);
+
+        binder.log("ProGuard, version 7.4.2", Project.MSG_INFO);
+        for (int i = 0; i < 5; i++) {
+            binder.log("Warning: com.example.A" + i + ": can't find referenced class com.other.B" + i,
+                    Project.MSG_INFO);
+        }
+        binder.log("Note: the configuration refers to the unknown class 'com.example.C'", Project.MSG_INFO);
+        binder.log("Reading program jar [app.jar]", Project.MSG_VERBOSE);
+        binder.close();
+
+        Assert.assertEquals(Arrays.asList(
+                "info ProGuard, version 7.4.2",
+                "warn Warning: com.example.A0: can't find referenced class com.other.B0",
+                "warn Warning: com.example.A1: can't find referenced class com.other.B1",
+                "info Note: the configuration refers to the unknown class 'com.example.C'",
+                "warn 3 more like: Warning: ...: can't find referenced class ..."), log.lines);
+        Assert.assertEquals(8, Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    public void dropsInfoLinesRatherThanWaiting() throws IOException {
+        RecordingLog log = new RecordingLog();
+        log.blocked = true;
+        MavenloggingBinder binder = new MavenloggingBinder(log, 1, 0, null);
+        binder.setMessageOutputLevel(Project.MSG_INFO);
+
+        for (int i = 0; i < 100; i++) {
+            binder.log("line " + i, Project.MSG_INFO);
+        }
+        log.unblock();
+        binder.close();
+
+        Assert.assertTrue(log.lines.size() < 100);
+        Assert.assertTrue(log.lines.get(log.lines.size() - 1).endsWith("couldn't keep up"));
+    }
+
+    private static final class RecordingLog extends SystemStreamLog {
+        final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+        boolean blocked;
+
+        synchronized void unblock() {
+            blocked = false;
+            notifyAll();
+        }
+
+        private synchronized void record(String level, CharSequence content) {
+            while (blocked) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            lines.add(level + " " + content);
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+            record("debug", content);
+        }
+
+        @Override
+        public void info(CharSequence content) {
+            record("info", content);
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            record("warn", content);
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            record("error", content);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ProGuardBuildCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyChangesWithInputContent() throws IOException {
+        File injar = write("in.jar", "one");
+        ProGuardBuildCache cache = new ProGuardBuildCache(folder.newFolder("cache"));
+        List<String> args = Arrays.asList("-injars", "'" + injar + "'(!META-INF/MANIFEST.MF)", "-dontobfuscate");
+
+        String key = cache.key(args, Collections.<File>emptyList(), folder.getRoot());
+        Assert.assertEquals(key, cache.key(args, Collections.<File>emptyList(), folder.getRoot()));
+
+        write("in.jar", "two");
+        Assert.assertNotEquals(key, cache.key(args, Collections.<File>emptyList(), folder.getRoot()));
+    }
+
+    @Test
+    public void keyIsTheSameForOtherCheckouts() throws IOException {
+        ProGuardBuildCache cache = new ProGuardBuildCache(folder.newFolder("cache"));
+        File one = folder.newFolder("one");
+        File two = folder.newFolder("two");
+        write("one/in.jar", "same");
+        write("two/in.jar", "same");
+
+        Assert.assertEquals(cache.key(checkoutArgs(one), Collections.<File>emptyList(), one),
+                cache.key(checkoutArgs(two), Collections.<File>emptyList(), two));
+    }
+
+    private static List<String> checkoutArgs(File baseDir) {
+        return Arrays.asList("-injars", new File(baseDir, "in.jar").getPath(),
+                "-outjars", new File(baseDir, "target/out.jar").getPath());
+    }
+
+    @Test
+    public void keyChangesWithArguments() throws IOException {
+        ProGuardBuildCache cache = new ProGuardBuildCache(folder.newFolder("cache"));
+        String key = cache.key(Collections.singletonList("-dontobfuscate"), Collections.<File>emptyList(), null);
+        Assert.assertNotEquals(key, cache.key(Collections.singletonList("-dontshrink"), Collections.<File>emptyList(), null));
+    }
+
+    @Test
+    public void restoresStoredOutputs() throws IOException {
+        ProGuardBuildCache cache = new ProGuardBuildCache(folder.newFolder("cache"));
+        File outjar = write("out.jar", "obfuscated");
+        File mapping = write("proguard_map.txt", "a -> b:");
+        List<File> outputs = Arrays.asList(outjar, mapping);
+
+        Assert.assertFalse(cache.restore("key", outputs));
+        cache.store("key", outputs);
+
+        write("out.jar", "stale");
+        Assert.assertTrue(mapping.delete());
+        Assert.assertTrue(cache.restore("key", outputs));
+        Assert.assertEquals("obfuscated", read(outjar));
+        Assert.assertEquals("a -> b:", read(mapping));
+    }
+
+    @Test
+    public void entryMissingAnOutputIsNotRestored() throws IOException {
+        File cacheDir = folder.newFolder("cache");
+        ProGuardBuildCache cache = new ProGuardBuildCache(cacheDir);
+        File outjar = write("out.jar", "obfuscated");
+        File seeds = new File(folder.getRoot(), "proguard_seeds.txt");
+        List<File> outputs = Arrays.asList(outjar, seeds);
+
+        // an output the run didn't write doesn't make the entry incomplete
+        cache.store("key", outputs);
+        Assert.assertTrue(cache.restore("key", outputs));
+        Assert.assertFalse(seeds.exists());
+
+        Assert.assertTrue(new File(cacheDir, "key/out.jar").delete());
+        write("out.jar", "stale");
+        Assert.assertFalse(cache.restore("key", outputs));
+        Assert.assertEquals("stale", read(outjar));
+
+        cache.store("key", outputs);
+        Assert.assertTrue(cache.restore("key", outputs));
+        Assert.assertEquals("stale", read(outjar));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
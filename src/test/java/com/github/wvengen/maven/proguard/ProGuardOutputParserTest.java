@@ -0,0 +1,68 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ProGuardOutputParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void classifiesNotesAndWarnings() throws IOException {
+        ProGuardOutputParser parser = new ProGuardOutputParser();
+        parser.line("Reading program jar [/work/app.jar]");
+        parser.line("Warning: com.example.app.Main: can't find referenced class org.slf4j.Logger");
+        parser.line("Warning: com.example.app.Main: can't find referenced class org.slf4j.LoggerFactory");
+        parser.line("Warning: com.example.app.Util: can't find referenced method 'void debug(java.lang.String)' "
+                + "in library class org.slf4j.Logger");
+        parser.line("Warning: com.example.app.Base: can't find superclass or interface javax.servlet.Filter");
+        parser.line("Note: duplicate definition of library class [javax.annotation.Nullable]");
+        parser.line("Note: com.example.app.Plugins: can't find dynamically referenced class com.example.Plugin");
+        parser.line("Note: com.example.app.Config accesses a declared field 'name' dynamically");
+        parser.line("Note: the configuration refers to the unknown class 'com.example.Gone'");
+        parser.line("Note: there were 1 duplicate class definitions.");
+        parser.line("Warning: there were 2 unresolved references to classes or interfaces.");
+
+        Assert.assertEquals(8, parser.getTotal());
+        Assert.assertEquals(Integer.valueOf(2), parser.kinds().get(ProGuardOutputParser.UNRESOLVED_CLASS));
+        Assert.assertEquals(Integer.valueOf(2), parser.kinds().get(ProGuardOutputParser.REFLECTION));
+
+        File app = jar("app.jar", "com/example/app/Main.class");
+        List<ProGuardOutputParser.Entry> entries = parser.entries(Collections.singletonList(app));
+        ProGuardOutputParser.Entry top = entries.get(0);
+        Assert.assertEquals(ProGuardOutputParser.UNRESOLVED_CLASS, top.kind);
+        Assert.assertEquals("com.example.app", top.packageName);
+        Assert.assertEquals("org.slf4j", top.referencedPackage);
+        Assert.assertEquals("app.jar", top.artifact);
+        Assert.assertEquals(2, top.count);
+
+        File json = new File(folder.getRoot(), "proguard_warnings.json");
+        parser.write(json, Collections.singletonList(app));
+        String written = new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(written, written.contains("\"unresolvedMember\": 1"));
+        Assert.assertTrue(written, written.contains("\"package\": \"javax.annotation\", \"artifact\": null"));
+    }
+
+    private File jar(String name, String... entries) throws IOException {
+        File jar = folder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ProcessAdmissionTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void limitsNumberOfRuns() throws Exception {
+        ProcessAdmission admission = new ProcessAdmission();
+        ProcessAdmission.Permit first = admission.acquire(2, 0, GB, null);
+        ProcessAdmission.Permit second = admission.acquire(2, 0, GB, null);
+
+        Waiter third = new Waiter(admission, 2, 0, GB, null);
+        Assert.assertFalse(third.admitted(200));
+
+        first.close();
+        Assert.assertTrue(third.admitted(5000));
+        second.close();
+        third.permit.get().close();
+        Assert.assertEquals(0, admission.getRunning());
+    }
+
+    @Test
+    public void limitsMemory() throws Exception {
+        ProcessAdmission admission = new ProcessAdmission();
+        ProcessAdmission.Permit first = admission.acquire(0, 4 * GB, 3 * GB, null);
+
+        Waiter second = new Waiter(admission, 0, 4 * GB, 2 * GB, null);
+        Assert.assertFalse(second.admitted(200));
+        first.close();
+        Assert.assertTrue(second.admitted(5000));
+
+        // a run over the budget on its own runs alone
+        Waiter huge = new Waiter(admission, 0, 4 * GB, 8 * GB, null);
+        Assert.assertFalse(huge.admitted(200));
+        second.permit.get().close();
+        Assert.assertTrue(huge.admitted(5000));
+        huge.permit.get().close();
+    }
+
+    @Test
+    public void admitsInOrder() throws Exception {
+        ProcessAdmission admission = new ProcessAdmission();
+        ProcessAdmission.Permit running = admission.acquire(0, 4 * GB, 3 * GB, null);
+
+        // the small run fits next to the running one, but must not pass the large one that asked first
+        Waiter large = new Waiter(admission, 0, 4 * GB, 4 * GB, null);
+        Assert.assertFalse(large.admitted(200));
+        Waiter small = new Waiter(admission, 0, 4 * GB, GB, null);
+        Assert.assertFalse(small.admitted(200));
+
+        running.close();
+        Assert.assertTrue(large.admitted(5000));
+        Assert.assertFalse(small.admitted(200));
+        large.permit.get().close();
+        Assert.assertTrue(small.admitted(5000));
+        small.permit.get().close();
+    }
+
+    @Test
+    public void sharesSlotsThroughLockDirectory() throws Exception {
+        File lockDirectory = folder.newFolder("slots");
+        // two sessions sharing the lock directory, as two builds would
+        ProcessAdmission build1 = new ProcessAdmission();
+        ProcessAdmission build2 = new ProcessAdmission();
+        ProcessAdmission.Permit first = build1.acquire(1, 0, 0, lockDirectory);
+
+        Waiter second = new Waiter(build2, 1, 0, 0, lockDirectory);
+        Assert.assertFalse(second.admitted(500));
+        first.close();
+        Assert.assertTrue(second.admitted(5000));
+        second.permit.get().close();
+    }
+
+    private static final class Waiter {
+        final AtomicReference<ProcessAdmission.Permit> permit = new AtomicReference<>();
+        private final Thread thread;
+        private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Waiter(final ProcessAdmission admission, final int maxProcesses, final long budget, final long memory,
+                final File lockDirectory) throws InterruptedException {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        permit.set(admission.acquire(maxProcesses, budget, memory, lockDirectory));
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            // let it queue up before the next one
+            Thread.sleep(50);
+        }
+
+        boolean admitted(long millis) throws InterruptedException {
+            thread.join(millis);
+            Assert.assertEquals(Collections.emptyList(), failures);
+            return permit.get() != null;
+        }
+    }
+}
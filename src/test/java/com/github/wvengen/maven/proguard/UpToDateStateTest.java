@@ -0,0 +1,114 @@
+package com.github.wvengen.maven.proguard;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class UpToDateStateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void upToDateUntilAnInputOrTheConfigurationChanges() throws IOException {
+        File injar = write("app.jar", "classes");
+        File classes = folder.newFolder("classes");
+        File resource = write("classes/app.properties", "a=1");
+        File outjar = write("app-small.jar", "shrunk");
+        List<File> inputs = Arrays.asList(injar, classes);
+        List<File> outputs = Collections.singletonList(outjar);
+
+        UpToDateState state = new UpToDateState(new File(folder.getRoot(), "state.properties"));
+        Assert.assertFalse(state.isUpToDate("key", inputs, outputs));
+        state.save("key", inputs, outputs);
+
+        state = new UpToDateState(new File(folder.getRoot(), "state.properties"));
+        Assert.assertTrue(state.isUpToDate("key", inputs, outputs));
+        Assert.assertFalse(state.isUpToDate("other", inputs, outputs));
+        Assert.assertFalse(state.isUpToDate("key", Collections.singletonList(injar), outputs));
+
+        // rebuilt with the same content
+        Assert.assertTrue(injar.setLastModified(injar.lastModified() - 10000));
+        Assert.assertTrue(resource.setLastModified(resource.lastModified() - 10000));
+        Assert.assertTrue(state.isUpToDate("key", inputs, outputs));
+
+        write("classes/app.properties", "a=2");
+        Assert.assertFalse(state.isUpToDate("key", inputs, outputs));
+    }
+
+    @Test
+    public void missingOrChangedOutputsAreNotUpToDate() throws IOException {
+        File injar = write("app.jar", "classes");
+        File outjar = write("app-small.jar", "shrunk");
+        List<File> inputs = Collections.singletonList(injar);
+        List<File> outputs = Collections.singletonList(outjar);
+
+        UpToDateState state = new UpToDateState(new File(folder.getRoot(), "state.properties"));
+        state.save("key", inputs, outputs);
+        Assert.assertTrue(state.isRecordedOutput(outjar));
+        Assert.assertTrue(state.isRecordedInput(injar));
+        Assert.assertFalse(state.isRecordedInput(outjar));
+
+        write("app-small.jar", "shrunk again");
+        Assert.assertFalse(state.isUpToDate("key", inputs, outputs));
+        Assert.assertFalse(state.isRecordedOutput(outjar));
+
+        state.save("key", inputs, outputs);
+        Assert.assertTrue(outjar.delete());
+        Assert.assertFalse(state.isUpToDate("key", inputs, outputs));
+
+        state.invalidate();
+        Assert.assertFalse(state.isRecordedInput(injar));
+    }
+
+    @Test
+    public void injarsAreComparedByTheirEntries() throws IOException {
+        File injar = jar("app.jar", 1000000000000L, "a/A.class", "A", "b/B.class", "B");
+        File outjar = write("app-small.jar", "shrunk");
+        List<File> inputs = Collections.singletonList(injar);
+        List<File> outputs = Collections.singletonList(outjar);
+
+        UpToDateState state = new UpToDateState(new File(folder.getRoot(), "state.properties"));
+        state.save("key", inputs, outputs);
+
+        // rebuilt with other timestamps and another entry order
+        jar("app.jar", 1500000000000L, "b/B.class", "B", "a/A.class", "A");
+        Assert.assertTrue(injar.setLastModified(injar.lastModified() + 10000));
+        Assert.assertTrue(state.isUpToDate("key", inputs, outputs));
+
+        jar("app.jar", 1500000000000L, "b/B.class", "B", "a/A.class", "A2");
+        Assert.assertFalse(state.isUpToDate("key", inputs, outputs));
+    }
+
+    private File jar(String name, long time, String... namesAndContents) throws IOException {
+        File jar = new File(folder.getRoot(), name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                ZipEntry entry = new ZipEntry(namesAndContents[i]);
+                entry.setTime(time);
+                out.putNextEntry(entry);
+                out.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
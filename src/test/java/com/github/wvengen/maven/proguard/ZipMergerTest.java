@@ -0,0 +1,158 @@
+package com.github.wvengen.maven.proguard;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+public class ZipMergerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void copiesEntriesFirstOneWins() throws IOException {
+        File first = jar("first.jar", "a/A.class", "A1", "readme.txt", "first");
+        File second = jar("second.jar", "a/A.class", "A2", "b/B.class", "B", "readme.txt", "second");
+        File merged = new File(folder.getRoot(), "merged.jar");
+
+        try (ZipMerger merger = new ZipMerger(merged, Deflater.DEFAULT_COMPRESSION)) {
+            merger.addEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8), 0);
+            merger.addZip(first, name -> true);
+            merger.addZip(second, name -> !name.endsWith(".txt"));
+            Assert.assertEquals(1, merger.getDuplicates());
+        }
+
+        try (ZipFile zip = new ZipFile(merged)) {
+            Assert.assertEquals("A1", read(zip, "a/A.class"));
+            Assert.assertEquals("B", read(zip, "b/B.class"));
+            Assert.assertEquals("first", read(zip, "readme.txt"));
+            Assert.assertEquals("Manifest-Version: 1.0\n", read(zip, "META-INF/MANIFEST.MF"));
+        }
+        // the local headers must be readable on their own as well
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(merged))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                names.add(entry.getName());
+                IOUtils.toByteArray(in);
+            }
+        }
+        Assert.assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "a/A.class", "readme.txt", "b/B.class"), names);
+    }
+
+    @Test
+    public void assemblyFilterLikeArchiver() {
+        Predicate<String> filter = ProGuardMojo.assemblyFilter("**/*.class,!internal/**", false);
+        Assert.assertTrue(filter.test("api/Api.class"));
+        Assert.assertFalse(filter.test("internal/Impl.class"));
+        Assert.assertFalse(filter.test("api/readme.txt"));
+
+        Predicate<String> directory = ProGuardMojo.assemblyFilter(null, true);
+        Assert.assertTrue(directory.test("api/Api.class"));
+        Assert.assertFalse(directory.test("api/CVS/Entries"));
+    }
+
+    @Test
+    public void normalizedJarsOnlyDependOnTheirEntries() throws IOException {
+        // two builds of the same project, by different users and JDKs at different times
+        String pom = "META-INF/maven/g/a/pom.properties";
+        File first = jar("first.jar", "b/B.class", "B",
+                "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nBuilt-By: alice\r\nBuild-Jdk: 17.0.9\r\n\r\n",
+                "a/A.class", "A",
+                pom, "#Generated by Maven\n#Tue Oct 01 12:00:00 UTC 2024\nversion=1\n");
+        File second = jar("second.jar", "a/A.class", "A", "b/B.class", "B",
+                "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\nBuilt-By: bob\r\nBuild-Jdk: 21.0.1\r\n\r\n",
+                pom, "#Generated by Maven\n#Wed Oct 02 08:30:15 CEST 2024\nversion=1\n");
+        Assert.assertTrue(first.setLastModified(first.lastModified() - 100000));
+        File firstNormalized = new File(folder.getRoot(), "first-normalized.jar");
+        File secondNormalized = new File(folder.getRoot(), "second-normalized.jar");
+        long time = ProGuardMojo.outputTime("2024-01-01T00:00:00Z");
+
+        ZipMerger.normalize(first, firstNormalized, time, Deflater.DEFAULT_COMPRESSION,
+                ProGuardMojo::reproducibleEntry);
+        ZipMerger.normalize(second, secondNormalized, time, Deflater.DEFAULT_COMPRESSION,
+                ProGuardMojo::reproducibleEntry);
+
+        Assert.assertArrayEquals(Files.readAllBytes(firstNormalized.toPath()),
+                Files.readAllBytes(secondNormalized.toPath()));
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(firstNormalized))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                names.add(entry.getName());
+                Assert.assertEquals(time, entry.getLastModifiedTime().toMillis()
+                        + TimeZone.getDefault().getOffset(time));
+            }
+        }
+        Assert.assertEquals(Arrays.asList("META-INF/MANIFEST.MF", pom, "a/A.class", "b/B.class"), names);
+        try (ZipFile zip = new ZipFile(firstNormalized)) {
+            Assert.assertEquals("Manifest-Version: 1.0\r\n\r\n", read(zip, "META-INF/MANIFEST.MF"));
+            Assert.assertEquals("#Generated by Maven\nversion=1\n", read(zip, pom));
+        }
+    }
+
+    @Test
+    public void pomPropertiesWithoutDate() throws IOException {
+        Assert.assertEquals("#Generated by Maven\nartifactId=a\ngroupId=g\nversion=1.0\n",
+                new String(ProGuardMojo.pomProperties("g", "a", "1.0"), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void storesEntriesWithoutCompression() throws IOException {
+        File stored = new File(folder.getRoot(), "stored.jar");
+        try (ZipMerger merger = new ZipMerger(stored, Deflater.NO_COMPRESSION)) {
+            merger.addEntry("a/", new byte[0], 0);
+            merger.addEntry("a/A.class", "AAAAAAAAAAAAAAAA".getBytes(StandardCharsets.UTF_8), 0);
+        }
+        try (ZipFile zip = new ZipFile(stored)) {
+            Assert.assertEquals(ZipEntry.STORED, zip.getEntry("a/A.class").getMethod());
+            Assert.assertEquals("AAAAAAAAAAAAAAAA", read(zip, "a/A.class"));
+        }
+    }
+
+    @Test
+    public void outputTimestampLikeMavenArchiver() {
+        Assert.assertEquals(1704067200000L, ProGuardMojo.outputTime("2024-01-01T00:00:00Z"));
+        Assert.assertEquals(1704067200000L, ProGuardMojo.outputTime("1704067200"));
+        Assert.assertEquals(315532800000L, ProGuardMojo.outputTime(null));
+        Assert.assertEquals(315532800000L, ProGuardMojo.outputTime("a"));
+        try {
+            ProGuardMojo.outputTime("yesterday");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private File jar(String name, String... namesAndContents) throws IOException {
+        File jar = folder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                out.putNextEntry(new ZipEntry(namesAndContents[i]));
+                out.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static String read(ZipFile zip, String name) throws IOException {
+        return new String(IOUtils.toByteArray(zip.getInputStream(zip.getEntry(name))), StandardCharsets.UTF_8);
+    }
+}
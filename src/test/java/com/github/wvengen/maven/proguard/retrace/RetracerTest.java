@@ -0,0 +1,84 @@
+package com.github.wvengen.maven.proguard.retrace;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class RetracerTest {
+
+    private static final String MAPPING = ""
+            + "# compiler: ProGuard\n"
+            + "com.example.Main -> a.a:\n"
+            + "    int count -> a\n"
+            + "    1:1:void <init>() -> <init>\n"
+            + "    10:13:void run(int):34:37 -> a\n"
+            + "    14:14:void com.example.Util.check(int):50:50 -> a\n"
+            + "    14:14:void run(int):38 -> a\n"
+            + "    20:22:void stop():60:62 -> b\n"
+            + "    void close() -> c\n"
+            + "    void dispose() -> c\n"
+            + "com.example.MainException -> a.b:\n";
+
+    @Test
+    public void decodesFrames() throws IOException {
+        Retracer retracer = new Retracer(MappingIndex.parse(new StringReader(MAPPING)));
+
+        Assert.assertEquals("\tat com.example.Main.run(SourceFile:35)",
+                retracer.retrace("\tat a.a.a(SourceFile:11)"));
+        Assert.assertEquals("\tat com.example.Util.check(SourceFile:50)\n\tat com.example.Main.run(SourceFile:38)",
+                retracer.retrace("\tat a.a.a(SourceFile:14)"));
+        Assert.assertEquals("\tat app//com.example.Main.stop(SourceFile:62) ~[app.jar:?]",
+                retracer.retrace("\tat app//a.a.b(SourceFile:22) ~[app.jar:?]"));
+        Assert.assertEquals("\tat com.example.Main.close(Unknown Source)\n\tat com.example.Main.dispose(Unknown Source)",
+                retracer.retrace("\tat a.a.c(Unknown Source)"));
+        Assert.assertEquals("\tat com.example.Main.toString(SourceFile:3)",
+                retracer.retrace("\tat a.a.toString(SourceFile:3)"));
+        Assert.assertEquals("\tat java.lang.Thread.run(Thread.java:750)",
+                retracer.retrace("\tat java.lang.Thread.run(Thread.java:750)"));
+    }
+
+    @Test
+    public void decodesExceptionLines() throws IOException {
+        Retracer retracer = new Retracer(MappingIndex.parse(new StringReader(MAPPING)));
+
+        Assert.assertEquals("com.example.MainException: failed", retracer.retrace("a.b: failed"));
+        Assert.assertEquals("Caused by: com.example.MainException", retracer.retrace("Caused by: a.b"));
+        Assert.assertEquals("Exception in thread \"main\" com.example.MainException: x",
+                retracer.retrace("Exception in thread \"main\" a.b: x"));
+        Assert.assertEquals("\t... 3 more", retracer.retrace("\t... 3 more"));
+    }
+
+    @Test
+    public void binaryFormDecodesTheSame() throws IOException {
+        MappingIndex parsed = MappingIndex.parse(new StringReader(MAPPING));
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        parsed.write(binary);
+        MappingIndex read = MappingIndex.read(new ByteArrayInputStream(binary.toByteArray()));
+
+        Assert.assertEquals(parsed.classCount(), read.classCount());
+        Assert.assertEquals(parsed.frames("a.a", "a", 14).toString(), read.frames("a.a", "a", 14).toString());
+        Assert.assertEquals(parsed.frames("a.a", "c", 0).toString(), read.frames("a.a", "c", 0).toString());
+    }
+
+    @Test
+    public void parallelDecodingKeepsOrder() throws IOException {
+        Retracer retracer = new Retracer(MappingIndex.parse(new StringReader(MAPPING)));
+        StringBuilder trace = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            trace.append("a.b: failure ").append(i).append("\n\tat a.a.b(SourceFile:20)\n");
+            expected.append("com.example.MainException: failure ").append(i)
+                    .append("\n\tat com.example.Main.stop(SourceFile:60)\n");
+        }
+
+        StringWriter out = new StringWriter();
+        retracer.retrace(new BufferedReader(new StringReader(trace.toString())), out, 4);
+        Assert.assertEquals(expected.toString(), out.toString());
+    }
+}